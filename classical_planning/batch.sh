@@ -0,0 +1,11 @@
+# Solves many problems of the domain in a single JVM (see src/BatchSolver.java). Takes the problem files or the
+# directories of problems, followed by the options of the solver, e.g.:
+#   sh batch.sh ./pddl --threads 4 --format json --output results.jsonl
+if [ $# -lt 1 ]; then
+	echo "Takes the problem files or directories to solve, followed by the options of the batch solver"
+	exit 1
+fi
+
+javac -d ./bin -classpath "./src:./lib/pddl4j-4.0.0.jar:" ./src/*.java
+
+java -classpath "./bin:./lib/pddl4j-4.0.0.jar:" BatchSolver "pddl/domain.pddl" "$@"
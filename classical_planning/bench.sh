@@ -0,0 +1,22 @@
+if [ $# -lt 1 ]; then
+	echo "Takes a number in {1, 2, 3}, corresponding to the problem instance used by the benchmark, followed by the"
+	echo "optional number of steps of the random walks, number of rounds and seed"
+	exit 1
+fi
+
+problem="./pddl/problem$1.pddl"
+if [ ! -f $problem ]; then
+	echo "Given problem does not exist."
+	exit 1
+fi
+
+javac -d ./bin -classpath "./src:./lib/pddl4j-4.0.0.jar:" ./src/*.java
+
+vector=""
+if java --list-modules 2>/dev/null | grep -q "jdk.incubator.vector"; then
+	vector="--add-modules jdk.incubator.vector"
+	javac $vector -nowarn -d ./bin -classpath "./bin:" ./src-vector/*.java 2>/dev/null || vector=""
+fi
+
+java $vector -classpath "./bin:./lib/pddl4j-4.0.0.jar:" HeuristicBenchmark "pddl/domain.pddl" $problem "${@:2}" \
+	| grep -E "ns/node|fluents, |Different"
@@ -0,0 +1,20 @@
+# Runs the benchmarks of the hot paths of the planner on the three problems (see src/PlannerBenchmark.java) and
+# compares the results with the baseline in benchmarks/baseline.txt. Options:
+#   --quick  fewer and shorter iterations, for a rough idea
+#   --save   write the results as the new baseline, to commit together with the change they measure
+
+baseline="./benchmarks/baseline.txt"
+options=()
+for option in "$@"; do
+	if [ "$option" == "--save" ]; then
+		options+=("--save" "$baseline")
+	else
+		options+=("$option")
+	fi
+done
+
+javac -d ./bin -classpath "./src:./lib/pddl4j-4.0.0.jar:" ./src/*.java
+
+java -classpath "./bin:./lib/pddl4j-4.0.0.jar:" PlannerBenchmark --baseline "$baseline" "${options[@]}" \
+	"pddl/domain.pddl" "pddl/problem1.pddl" "pddl/problem2.pddl" "pddl/problem3.pddl" \
+	| grep -E "ns/op|Compared|x   allocation"
@@ -1,5 +1,6 @@
-if [ $# -ne 1 ]; then
-	echo "Takes only one argument: a number in {1, 2, 3}, corresponding to the problem instance need to be solved"
+if [ $# -lt 1 ]; then
+	echo "Takes as first argument a number in {1, 2, 3}, corresponding to the problem instance need to be solved,"
+	echo "followed by the options of the planner"
 	exit 1
 fi
 
@@ -19,5 +20,14 @@ else
 fi
 
 javac -d ./bin -classpath "./src:./lib/pddl4j-4.0.0.jar:" ./src/*.java
-java -classpath "./bin:./lib/pddl4j-4.0.0.jar:" MyAlgorithm "pddl/domain.pddl" $problem
+
+# The vector kernel of the heuristic (option --bitset-kernel vector) needs the incubator module of the Vector API:
+# it's compiled only if the JDK has it, otherwise the scalar kernel is used
+vector=""
+if java --list-modules 2>/dev/null | grep -q "jdk.incubator.vector"; then
+	vector="--add-modules jdk.incubator.vector"
+	javac $vector -nowarn -d ./bin -classpath "./bin:" ./src-vector/*.java 2>/dev/null || vector=""
+fi
+
+java $vector -classpath "./bin:./lib/pddl4j-4.0.0.jar:" MyAlgorithm "pddl/domain.pddl" $problem "${@:2}"
 
@@ -0,0 +1,7 @@
+# Solves generated problems of growing size and reports how the planner scales (see src/ScalingBenchmark.java). The
+# options are passed to the benchmark, e.g. --from 1 --to 6 --timeout 60 --seed 1. A single problem can be generated
+# with: java -classpath "./bin:./lib/pddl4j-4.0.0.jar:" ProblemGenerator --help
+
+javac -d ./bin -classpath "./src:./lib/pddl4j-4.0.0.jar:" ./src/*.java
+
+java -classpath "./bin:./lib/pddl4j-4.0.0.jar:" ScalingBenchmark "$@" "pddl/domain.pddl"
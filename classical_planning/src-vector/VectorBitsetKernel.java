@@ -0,0 +1,90 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Implementation of <code>BitsetKernel</code> working on as many words at a time as the preferred vector shape of the
+ * CPU holds (4 words with AVX2, 8 with AVX-512). The words of a sparse row are gathered from, and scattered to, the
+ * bitset through their indexes; the words left over at the end of a row, or of a dense bitset, are processed one at a
+ * time.
+ *
+ * It needs the incubator module <code>jdk.incubator.vector</code>: it's compiled and run with
+ * <code>--add-modules jdk.incubator.vector</code> (see <code>run.sh</code>) and it's loaded by
+ * <code>BitsetKernel.create</code>, which falls back to <code>ScalarBitsetKernel</code> if it's missing.
+ * */
+public class VectorBitsetKernel implements BitsetKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    public boolean isSubset(int[] words, long[] masks, int from, int to, long[] set) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            LongVector mask = LongVector.fromArray(SPECIES, masks, i);
+            LongVector bits = LongVector.fromArray(SPECIES, set, 0, words, i);
+            if (mask.lanewise(VectorOperators.AND_NOT, bits).reduceLanes(VectorOperators.OR) != 0)
+                return false;
+        }
+        for (; i < to; i++)
+            if ((masks[i] & ~set[words[i]]) != 0)
+                return false;
+        return true;
+    }
+
+    @Override
+    public boolean or(int[] words, long[] masks, int from, int to, long[] target) {
+        long added = 0;
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            LongVector mask = LongVector.fromArray(SPECIES, masks, i);
+            LongVector bits = LongVector.fromArray(SPECIES, target, 0, words, i);
+            added |= mask.lanewise(VectorOperators.AND_NOT, bits).reduceLanes(VectorOperators.OR);
+            bits.or(mask).intoArray(target, 0, words, i);
+        }
+        for (; i < to; i++) {
+            final int w = words[i];
+            added |= masks[i] & ~target[w];
+            target[w] |= masks[i];
+        }
+        return added != 0;
+    }
+
+    @Override
+    public void andNot(long[] a, int aFrom, long[] b, int bFrom, long[] target, int targetFrom, int length) {
+        int i = 0;
+        for (; i + LANES <= length; i += LANES) {
+            LongVector va = LongVector.fromArray(SPECIES, a, aFrom + i);
+            LongVector vb = LongVector.fromArray(SPECIES, b, bFrom + i);
+            va.lanewise(VectorOperators.AND_NOT, vb).intoArray(target, targetFrom + i);
+        }
+        for (; i < length; i++)
+            target[targetFrom + i] = a[aFrom + i] & ~b[bFrom + i];
+    }
+
+    /**
+     * The JDK 17 Vector API has no lane-wise bit count, so the intersection is computed on vectors and its bits are
+     * counted one word at a time
+     * */
+    @Override
+    public int andCardinality(long[] a, long[] b) {
+        int count = 0;
+        int i = 0;
+        for (; i + LANES <= a.length; i += LANES) {
+            LongVector v = LongVector.fromArray(SPECIES, a, i).and(LongVector.fromArray(SPECIES, b, i));
+            if (v.reduceLanes(VectorOperators.OR) == 0)
+                continue;
+            for (int lane = 0; lane < LANES; lane++)
+                count += Long.bitCount(a[i + lane] & b[i + lane]);
+        }
+        for (; i < a.length; i++)
+            count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + LANES + " words)";
+    }
+}
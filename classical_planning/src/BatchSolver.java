@@ -0,0 +1,245 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.ParsedDomain;
+import fr.uga.pddl4j.parser.ParsedProblem;
+import fr.uga.pddl4j.parser.Parser;
+import fr.uga.pddl4j.plan.Plan;
+import fr.uga.pddl4j.planners.LogLevel;
+import fr.uga.pddl4j.problem.DefaultProblem;
+import fr.uga.pddl4j.problem.Problem;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+import picocli.CommandLine;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves many problems of the same domain in a single JVM, so that the start of the JVM, the parsing of the domain
+ * and the warm-up of the JIT are paid once for all of them. The domain is parsed once; the problems are parsed one at
+ * a time by the same parser, which checks them against the domain, and then grounded and solved concurrently on a
+ * pool of a bounded number of threads, each with its own <code>MyAlgorithm</code> and so its own
+ * <code>MyHeuristic</code>.
+ *
+ * The grounding of a problem reads the parsed domain, which is not meant to be shared by several threads: so every
+ * problem gets its own copy of it, deserialized from the bytes of the domain parsed at the beginning, which is much
+ * cheaper than parsing the text again.
+ *
+ * A line of results is written as soon as a problem is done, in CSV or as a JSON object, with the length of the plan
+ * (-1 if no plan has been found), the time spent parsing and grounding, without the time spent waiting for the
+ * parser, the time spent searching, the explored nodes, the memory used by the search as estimated by the planner and
+ * the bytes allocated by the thread that solved the problem.
+ *
+ * Usage: <code>java BatchSolver [options] domain problem|directory...</code>, see <code>--help</code>, or
+ * <code>batch.sh</code>. The problems of a directory are all its <code>.pddl</code> files but the domain.
+ * */
+@CommandLine.Command(name = "BatchSolver", mixinStandardHelpOptions = true,
+        description = "Solves many problems of a domain in a single JVM, on a pool of threads")
+public class BatchSolver implements Callable<Integer> {
+
+    @CommandLine.Parameters(index = "0", description = "The domain file")
+    private Path domain;
+
+    @CommandLine.Parameters(index = "1..*", arity = "1..*", description = "The problem files, or directories of them")
+    private List<Path> problems;
+
+    @CommandLine.Option(names = {"--threads"}, paramLabel = "<threads>",
+            description = "Number of problems solved at the same time (preset: the number of processors)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @CommandLine.Option(names = {"--format"}, defaultValue = "csv", paramLabel = "<csv|json>",
+            description = "Format of the lines of results (preset: csv)")
+    private String format;
+
+    @CommandLine.Option(names = {"--output"}, description = "File where the results are written (preset: the "
+            + "standard output)")
+    private Path output;
+
+    @CommandLine.Option(names = {"-t", "--timeout"}, defaultValue = "600",
+            description = "Timeout of every search, in seconds (preset: 600)")
+    private int timeout;
+
+    /**
+     * Where the lines of results are written, by all the threads
+     * */
+    private PrintStream out;
+
+    @Override
+    public Integer call() throws Exception {
+        if (this.threads < 1)
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        if (!this.format.equals("csv") && !this.format.equals("json"))
+            throw new IllegalArgumentException("Unknown format: " + this.format);
+
+        // The root logger is turned off, since the log of the parser and of the grounding would otherwise be mixed
+        // with the results
+        Configurator.setRootLevel(Level.OFF);
+
+        Parser parser = new Parser();
+        parser.setLogLevel(LogLevel.OFF);
+        ParsedDomain parsedDomain = parser.parseDomain(this.domain.toFile());
+        if (parsedDomain == null || !parser.getErrorManager().isEmpty()) {
+            System.err.println("Cannot parse the domain " + this.domain);
+            return 1;
+        }
+        final byte[] domainBytes = serialize(parsedDomain);
+
+        List<Path> files = listProblems();
+        this.out = this.output != null ? new PrintStream(Files.newOutputStream(this.output), true, "UTF-8")
+                : System.out;
+        if (this.format.equals("csv"))
+            this.out.println("problem,plan_length,ground_ms,search_ms,explored_nodes,search_memory_bytes,"
+                    + "allocated_bytes,error");
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads);
+        for (Path file : files)
+            pool.execute(() -> solve(parser, domainBytes, file));
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        if (this.output != null)
+            this.out.close();
+        return 0;
+    }
+
+    /**
+     * Returns the problem files given, with the directories replaced by their <code>.pddl</code> files, in order of
+     * name, but the domain
+     * */
+    private List<Path> listProblems() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : this.problems) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    files.addAll(children
+                            .filter(p -> p.toString().endsWith(".pddl"))
+                            .filter(p -> !sameFile(p, this.domain))
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            }
+            else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private static boolean sameFile(Path a, Path b) {
+        try {
+            return Files.isSameFile(a, b);
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses, grounds and solves a problem, and writes its line of results
+     * */
+    private void solve(Parser parser, byte[] domainBytes, Path file) {
+        MemoryMeter memoryMeter = new MemoryMeter();
+        long groundMillis = 0;
+        long searchMillis = 0;
+        int planLength = -1;
+        int exploredNodes = 0;
+        long searchMemory = 0;
+        String error = null;
+        try {
+            // The clock starts once the parser is ours, so that the time spent waiting for the other threads to parse
+            // is not counted as grounding
+            long begin;
+            ParsedProblem parsedProblem;
+            synchronized (parser) {
+                begin = System.nanoTime();
+                parsedProblem = parser.parseProblem(file.toFile());
+                if (parsedProblem == null || !parser.getErrorManager().isEmpty()) {
+                    parser.getErrorManager().clear();
+                    throw new IllegalArgumentException("cannot parse the problem");
+                }
+            }
+            Problem problem = new DefaultProblem(new DefaultParsedProblem(deserialize(domainBytes), parsedProblem));
+            problem.instantiate();
+            groundMillis = (System.nanoTime() - begin) / 1_000_000;
+
+            MyAlgorithm planner = new MyAlgorithm();
+            planner.setTimeout(this.timeout);
+            planner.setLogLevel(LogLevel.OFF);
+            planner.setThreads(1);
+            final long searchBegin = System.nanoTime();
+            Plan plan = planner.solve(problem);
+            searchMillis = (System.nanoTime() - searchBegin) / 1_000_000;
+            planLength = plan != null ? plan.size() : -1;
+            exploredNodes = planner.getExploredNodes();
+            searchMemory = planner.getStatistics().getMemoryUsedToSearch();
+        }
+        catch (Exception | OutOfMemoryError e) {
+            error = e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+        }
+        write(file, planLength, groundMillis, searchMillis, exploredNodes, searchMemory,
+                memoryMeter.getAllocatedBytes(), error);
+    }
+
+    /**
+     * Writes a line of results, in the format chosen
+     * */
+    private void write(Path file, int planLength, long groundMillis, long searchMillis, int exploredNodes,
+                       long searchMemory, long allocatedBytes, String error) {
+        String line;
+        if (this.format.equals("csv")) {
+            line = String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%s", csv(file.toString()), planLength,
+                    groundMillis, searchMillis, exploredNodes, searchMemory, allocatedBytes,
+                    error != null ? csv(error) : "");
+        }
+        else {
+            line = String.format(Locale.ROOT, "{\"problem\": %s, \"plan_length\": %d, \"ground_ms\": %d, "
+                            + "\"search_ms\": %d, \"explored_nodes\": %d, \"search_memory_bytes\": %d, "
+                            + "\"allocated_bytes\": %d, \"error\": %s}", json(file.toString()), planLength,
+                    groundMillis, searchMillis, exploredNodes, searchMemory, allocatedBytes,
+                    error != null ? json(error) : "null");
+        }
+        synchronized (this.out) {
+            this.out.println(line);
+        }
+    }
+
+    private static String csv(String value) {
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+
+    private static String json(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static byte[] serialize(ParsedDomain domain) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(bytes)) {
+            stream.writeObject(domain);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ParsedDomain deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (ParsedDomain) stream.readObject();
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new BatchSolver()).execute(args));
+    }
+}
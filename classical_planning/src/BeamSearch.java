@@ -0,0 +1,305 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+
+import java.util.Arrays;
+
+/**
+ * Beam search: the search goes down the tree one depth at a time, and of all the successors of the nodes of a depth it
+ * keeps only the best <code>width</code>, by heuristic and then by the priority that orders the frontier of
+ * <code>MyAlgorithm.My_ASTAR</code> (see <code>Node.getPriority</code>). The nodes from which the goal can't be
+ * reached, or pruned by the rules of the heuristic, are never kept. The first successor with heuristic 0 is the
+ * solution. The search is not complete: it fails if a depth has no successor left, even if a plan exists.
+ *
+ * The memory used doesn't grow with the nodes generated, as in A*, but only with the depth: the nodes kept alive are
+ * the beam and the nodes on the paths that lead to it, at most <code>width</code> per depth, and the successors of a
+ * depth are kept in a bounded heap of <code>width</code> nodes while they're generated. The duplicates are found only
+ * among the states generated at the last <code>window</code> depths, each depth having its own set of fingerprints,
+ * which is dropped when the window moves past it: a state met again further down is explored again.
+ *
+ * With a memory ceiling, the memory taken by the search is estimated after every depth as if no node of the previous
+ * depths had been collected, plus the sets of the window; when it's above the ceiling, the width is halved, down to
+ * one node.
+ * */
+public class BeamSearch {
+
+    private final Problem problem;
+
+    private final SuccessorGenerator successorGenerator;
+
+    private final CompiledEffects compiledEffects;
+
+    private final MyHeuristic heuristic;
+
+    private final Zobrist zobrist;
+
+    /**
+     * The symmetries whose canonical forms give the fingerprints of the states, or null
+     * */
+    private Symmetry symmetry;
+
+    private int width;
+
+    private final int window;
+
+    /**
+     * The memory ceiling in bytes, or 0 if the width never changes
+     * */
+    private final long memoryCeiling;
+
+    /**
+     * The deadline of the search, on the clock of <code>System.nanoTime</code>
+     * */
+    private final long deadline;
+
+    /**
+     * The sets of the fingerprints of the states generated at the depths of the window, in a ring indexed by depth
+     * */
+    private final ClosedSet[] generated;
+
+    /**
+     * The width of the beam when every set of the window was filled
+     * */
+    private final int[] generatedWidth;
+
+    private int expandedNodes;
+
+    private long retainedNodes;
+
+    /**
+     * @param problem the problem to solve
+     * @param successorGenerator the actions applicable to the states of the problem
+     * @param compiledEffects the effects of the actions of the problem
+     * @param heuristic the heuristic
+     * @param width the number of nodes kept at every depth
+     * @param window the number of depths among which the duplicates are found
+     * @param memoryCeiling the memory ceiling in bytes, or 0
+     * @param timeout the maximum time of the search, in milliseconds
+     * */
+    public BeamSearch(Problem problem, SuccessorGenerator successorGenerator, CompiledEffects compiledEffects,
+                      MyHeuristic heuristic, int width, int window, long memoryCeiling, long timeout) {
+        if (width < 1 || window < 1)
+            throw new IllegalArgumentException("The width and the window of the beam must be at least 1");
+        this.problem = problem;
+        this.successorGenerator = successorGenerator;
+        this.compiledEffects = compiledEffects;
+        this.heuristic = heuristic;
+        this.zobrist = new Zobrist(problem.getFluents().size());
+        this.width = width;
+        this.window = window;
+        this.memoryCeiling = memoryCeiling;
+        this.deadline = System.nanoTime() + timeout * 1_000_000L;
+        this.generated = new ClosedSet[window];
+        this.generatedWidth = new int[window];
+        for (int i = 0; i < window; i++)
+            this.generated[i] = new ClosedSet();
+    }
+
+    /**
+     * Makes the fingerprints of the states the ones of their canonical form under <code>symmetry</code>, or the plain
+     * ones if it's null. It must be called before <code>search</code>.
+     * */
+    public void setSymmetry(Symmetry symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Searches a solution from <code>root</code>, whose heuristic must have been computed, and returns the solution
+     * node, or null if the beam runs out of nodes or the time is over
+     * */
+    public Node search(Node root) {
+        if (root.getHeuristic() == 0.0)
+            return root;
+        if (root.getHeuristic() == Double.MAX_VALUE)
+            return null;
+
+        root.computeFingerprint(this.zobrist, this.symmetry);
+        this.generated[0].add(root.getFingerprint(), 0);
+        Node[] beam = {root};
+        this.retainedNodes = 1;
+        final Layer layer = new Layer();
+
+        for (int depth = 1; beam.length > 0; depth++) {
+            // The set of the depth reuses the one of the depth that leaves the window, unless it was filled by a
+            // wider beam: a set never shrinks, and it would keep the memory of that beam
+            final int slot = depth % this.window;
+            if (this.generatedWidth[slot] > this.width)
+                this.generated[slot] = new ClosedSet();
+            else
+                this.generated[slot].clear();
+            this.generatedWidth[slot] = this.width;
+            final ClosedSet current = this.generated[slot];
+
+            layer.reset(this.width);
+            for (Node parent : beam) {
+                if (System.nanoTime() - this.deadline > 0)
+                    return null;
+                this.expandedNodes++;
+                for (int actionIndex : this.successorGenerator.getApplicableActions(parent)) {
+                    State state = this.compiledEffects.apply(parent, actionIndex);
+                    Node next = new Node(state, parent, parent.getCost() + 1,
+                            this.problem.getActions().get(actionIndex), this.heuristic.getModel().getKind(actionIndex),
+                            depth);
+                    next.computeFingerprint(this.zobrist, this.symmetry);
+                    if (isDuplicate(next.getFingerprint()))
+                        continue;
+                    current.add(next.getFingerprint(), depth);
+
+                    final double h = this.heuristic.estimate(next);
+                    if (h == Double.MAX_VALUE)
+                        continue;
+                    next.setHeuristic(h);
+                    if (h == 0.0)
+                        return next;
+                    layer.offer(next);
+                }
+            }
+
+            // The successors kept become the beam of the next depth
+            beam = layer.drain();
+            this.retainedNodes += beam.length;
+            applyMemoryCeiling(root);
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if the state with the given fingerprint has been generated at a depth of the window
+     * */
+    private boolean isDuplicate(long fingerprint) {
+        for (ClosedSet set : this.generated)
+            if (set.getCost(fingerprint) != Integer.MAX_VALUE)
+                return true;
+        return false;
+    }
+
+    /**
+     * Halves the width if the memory estimated is above the ceiling. It's halved once per depth, since the sets of
+     * the window only shrink when they're reused.
+     * */
+    private void applyMemoryCeiling(Node root) {
+        if (this.memoryCeiling > 0 && this.width > 1 && getMemoryUsed(root) > this.memoryCeiling)
+            this.width /= 2;
+    }
+
+    /**
+     * Returns the memory estimated for the nodes kept alive, as if none had been collected, and for the sets of the
+     * window
+     * */
+    public long getMemoryUsed(Node root) {
+        return MemoryMeter.estimateNodes(this.retainedNodes + this.width, root) + getClosedSetsMemory();
+    }
+
+    /**
+     * Returns the number of nodes kept alive: the nodes of all the beams, on the paths that lead to the last one
+     * */
+    public long getRetainedNodes() {
+        return this.retainedNodes;
+    }
+
+    /**
+     * Returns the memory taken by the sets of the fingerprints of the window
+     * */
+    public long getClosedSetsMemory() {
+        long bytes = 0;
+        for (ClosedSet set : this.generated)
+            bytes += set.getMemoryUsed();
+        return bytes;
+    }
+
+    /**
+     * Returns the number of nodes expanded
+     * */
+    public int getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Returns the number of nodes kept at every depth, which is smaller than the one given if the memory ceiling has
+     * been reached
+     * */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * The best successors of a depth, in a binary max-heap of at most <code>capacity</code> nodes ordered by a
+     * primitive <code>long</code> key: the heuristic in the upper 32 bits and the priority in the lower ones. A
+     * successor better than the worst one of a full heap replaces it.
+     * */
+    private static class Layer {
+
+        private long[] keys = new long[16];
+
+        private Node[] nodes = new Node[16];
+
+        private int size;
+
+        private int capacity;
+
+        void reset(int capacity) {
+            if (this.keys.length < capacity) {
+                this.keys = new long[capacity];
+                this.nodes = new Node[capacity];
+            }
+            this.capacity = capacity;
+            this.size = 0;
+        }
+
+        void offer(Node node) {
+            final long key = ((long) node.getHeuristic() << 32) | ((node.getPriority() ^ 0x80000000L) & 0xFFFFFFFFL);
+            if (this.size < this.capacity) {
+                siftUp(this.size++, key, node);
+            }
+            else if (key < this.keys[0]) {
+                siftDown(0, key, node);
+            }
+        }
+
+        /**
+         * Returns the nodes of the heap, best first, and empties it
+         * */
+        Node[] drain() {
+            Node[] drained = new Node[this.size];
+            for (int i = this.size - 1; i >= 0; i--) {
+                drained[i] = this.nodes[0];
+                final int last = --this.size;
+                final long key = this.keys[last];
+                final Node node = this.nodes[last];
+                this.nodes[last] = null;
+                if (last > 0)
+                    siftDown(0, key, node);
+            }
+            Arrays.fill(this.nodes, null);
+            return drained;
+        }
+
+        private void siftUp(int i, long key, Node node) {
+            while (i > 0) {
+                final int parent = (i - 1) >>> 1;
+                if (this.keys[parent] >= key)
+                    break;
+                this.keys[i] = this.keys[parent];
+                this.nodes[i] = this.nodes[parent];
+                i = parent;
+            }
+            this.keys[i] = key;
+            this.nodes[i] = node;
+        }
+
+        private void siftDown(int i, long key, Node node) {
+            final int half = this.size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < this.size && this.keys[child + 1] > this.keys[child])
+                    child++;
+                if (key >= this.keys[child])
+                    break;
+                this.keys[i] = this.keys[child];
+                this.nodes[i] = this.nodes[child];
+                i = child;
+            }
+            this.keys[i] = key;
+            this.nodes[i] = node;
+        }
+    }
+}
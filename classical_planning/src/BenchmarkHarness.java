@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small benchmark harness in the spirit of JMH, for a tree that has no build tool to fetch it. Every benchmark is
+ * run for some iterations of warm-up, whose results are thrown away, and then for some measured iterations; the
+ * result is the mean time per operation with its standard deviation across the measured iterations. Two modes are
+ * available:
+ * <ul>
+ *     <li>average time: every iteration repeats the operation for a fixed time, for the micro-benchmarks;</li>
+ *     <li>single shot: every iteration runs the operation once, for the operations that last seconds, like a
+ *     whole search.</li>
+ * </ul>
+ * During the measured iterations two profilers are always on, like the <code>gc</code> profiler of JMH: the bytes
+ * allocated by the thread per operation, from <code>MemoryMeter</code>, and the number and the time of the garbage
+ * collections, from the beans of the collectors.
+ *
+ * The results can be saved to a file, and compared with the ones saved before, the baseline: see
+ * <code>PlannerBenchmark</code>.
+ * */
+public class BenchmarkHarness {
+
+    /**
+     * An operation to measure. It returns a value depending on its work, that the harness consumes so that the JIT
+     * can't remove the work as dead code
+     * */
+    public interface Operation {
+        long run();
+    }
+
+    /**
+     * The result of a benchmark: time and allocated bytes per operation, and garbage collections per iteration
+     * */
+    public static class Result {
+
+        private final String name;
+
+        private final double nanosPerOperation;
+
+        private final double nanosDeviation;
+
+        private final double bytesPerOperation;
+
+        private final double collections;
+
+        private final double collectionMillis;
+
+        Result(String name, double nanosPerOperation, double nanosDeviation, double bytesPerOperation,
+               double collections, double collectionMillis) {
+            this.name = name;
+            this.nanosPerOperation = nanosPerOperation;
+            this.nanosDeviation = nanosDeviation;
+            this.bytesPerOperation = bytesPerOperation;
+            this.collections = collections;
+            this.collectionMillis = collectionMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getNanosPerOperation() {
+            return nanosPerOperation;
+        }
+
+        public double getBytesPerOperation() {
+            return bytesPerOperation;
+        }
+    }
+
+    private final int warmupIterations;
+
+    private final int measuredIterations;
+
+    private final long iterationNanos;
+
+    private final MemoryMeter memoryMeter;
+
+    private final List<Result> results;
+
+    /**
+     * Written with the values returned by the operations, so that they're not dead code
+     * */
+    private static volatile long sink;
+
+    /**
+     * @param warmupIterations the iterations of warm-up of every benchmark
+     * @param measuredIterations the measured iterations of every benchmark
+     * @param iterationMillis the duration of an iteration in average time mode
+     * */
+    public BenchmarkHarness(int warmupIterations, int measuredIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        this.memoryMeter = new MemoryMeter();
+        this.results = new ArrayList<>();
+    }
+
+    /**
+     * Measures <code>operation</code> in average time mode and prints its result
+     * */
+    public Result averageTime(String name, Operation operation) {
+        for (int i = 0; i < this.warmupIterations; i++)
+            iterate(operation, this.iterationNanos);
+        return measure(name, operation, this.iterationNanos);
+    }
+
+    /**
+     * Measures <code>operation</code> in single shot mode and prints its result
+     * */
+    public Result singleShot(String name, Operation operation, int warmupShots, int measuredShots) {
+        for (int i = 0; i < warmupShots; i++)
+            sink += operation.run();
+        return measure(name, operation, -1, measuredShots);
+    }
+
+    private Result measure(String name, Operation operation, long iterationNanos) {
+        return measure(name, operation, iterationNanos, this.measuredIterations);
+    }
+
+    /**
+     * Runs the measured iterations, one shot each if <code>iterationNanos</code> is negative, and records their
+     * result
+     * */
+    private Result measure(String name, Operation operation, long iterationNanos, int iterations) {
+        double[] nanos = new double[iterations];
+        long operations = 0;
+        long allocated = 0;
+        long collections = 0;
+        long collectionMillis = 0;
+        for (int i = 0; i < iterations; i++) {
+            final long collectionsBefore = collections();
+            final long collectionMillisBefore = collectionMillis();
+            final long allocatedBefore = this.memoryMeter.currentThreadAllocatedBytes();
+            final long start = System.nanoTime();
+            final long done = iterationNanos < 0 ? shot(operation) : iterate(operation, iterationNanos);
+            nanos[i] = (double) (System.nanoTime() - start) / done;
+            allocated += this.memoryMeter.currentThreadAllocatedBytes() - allocatedBefore;
+            collections += collections() - collectionsBefore;
+            collectionMillis += collectionMillis() - collectionMillisBefore;
+            operations += done;
+        }
+
+        double mean = 0;
+        for (double n : nanos)
+            mean += n;
+        mean /= iterations;
+        double variance = 0;
+        for (double n : nanos)
+            variance += (n - mean) * (n - mean);
+        final double deviation = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        Result result = new Result(name, mean, deviation, (double) allocated / operations,
+                (double) collections / iterations, (double) collectionMillis / iterations);
+        this.results.add(result);
+        System.out.println(format(result));
+        return result;
+    }
+
+    /**
+     * Repeats the operation for at least <code>nanos</code> nanoseconds, reading the clock every few operations, and
+     * returns the number of operations done
+     * */
+    private static long iterate(Operation operation, long nanos) {
+        final long end = System.nanoTime() + nanos;
+        long operations = 0;
+        long value = 0;
+        do {
+            for (int k = 0; k < 16; k++)
+                value += operation.run();
+            operations += 16;
+        } while (System.nanoTime() < end);
+        sink += value;
+        return operations;
+    }
+
+    private static long shot(Operation operation) {
+        sink += operation.run();
+        return 1;
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Long.max(bean.getCollectionCount(), 0);
+        return count;
+    }
+
+    private static long collectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Long.max(bean.getCollectionTime(), 0);
+        return millis;
+    }
+
+    /**
+     * Returns the line of a result, in the format of the saved results
+     * */
+    private static String format(Result result) {
+        return String.format(Locale.ROOT, "%-28s %16.1f +- %-12.1f ns/op %14.1f B/op %8.2f gc/it %8.1f gc-ms/it",
+                result.name, result.nanosPerOperation, result.nanosDeviation, result.bytesPerOperation,
+                result.collections, result.collectionMillis);
+    }
+
+    /**
+     * Saves the results of all the benchmarks run until now to <code>file</code>, after a comment line
+     * */
+    public void save(Path file, String comment) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# " + comment);
+        for (Result result : this.results)
+            lines.add(format(result));
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Files.write(file, lines);
+    }
+
+    /**
+     * Prints, for every benchmark run until now that is also in the baseline saved in <code>file</code>, the ratio
+     * between its time and its allocated bytes per operation and the ones of the baseline
+     * */
+    public void compare(Path file) throws IOException {
+        Map<String, double[]> baseline = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#"))
+                continue;
+            String[] fields = line.trim().split("\\s+");
+            // name, time, +-, deviation, ns/op, bytes, B/op, ...
+            baseline.put(fields[0], new double[]{Double.parseDouble(fields[1]), Double.parseDouble(fields[5])});
+        }
+
+        System.out.println();
+        System.out.println("Compared with " + file + " (ratio < 1 is better):");
+        for (Result result : this.results) {
+            double[] base = baseline.get(result.name);
+            if (base == null)
+                continue;
+            System.out.println(String.format(Locale.ROOT, "%-28s time %6.2fx   allocation %s", result.name,
+                    result.nanosPerOperation / base[0], base[1] > 0
+                            ? String.format(Locale.ROOT, "%6.2fx", result.bytesPerOperation / base[1]) : "     -"));
+        }
+    }
+}
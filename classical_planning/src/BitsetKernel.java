@@ -0,0 +1,53 @@
+/**
+ * The word-level operations on bitsets used by <code>BitsetRelaxedGraph</code>. A bitset is an array of
+ * <code>long</code>, 64 fluents per word. The rows of the operators are sparse: a row is the list of the words of the
+ * bitset where it has at least one bit, given as the index of the word and its mask, in the positions
+ * <code>[from, to)</code> of the two arrays <code>words</code> and <code>masks</code>.
+ *
+ * Two implementations are available: <code>ScalarBitsetKernel</code>, that works one word at a time, and
+ * <code>VectorBitsetKernel</code>, that works on several words at a time through the Vector API of the JDK. The last
+ * one needs the incubator module <code>jdk.incubator.vector</code>, both to be compiled and to be run, so it's kept
+ * apart from the other sources and it's loaded by name: see <code>create</code>.
+ * */
+public interface BitsetKernel {
+
+    /**
+     * Returns true if every bit of the row is set in <code>set</code>
+     * */
+    boolean isSubset(int[] words, long[] masks, int from, int to, long[] set);
+
+    /**
+     * Sets in <code>target</code> the bits of the row, and returns true if at least one of them wasn't set
+     * */
+    boolean or(int[] words, long[] masks, int from, int to, long[] target);
+
+    /**
+     * Puts in <code>target</code> the bits of <code>a</code> that are not set in <code>b</code>, for the first
+     * <code>length</code> words of the three arrays, starting from the positions <code>aFrom</code>,
+     * <code>bFrom</code> and <code>targetFrom</code>
+     * */
+    void andNot(long[] a, int aFrom, long[] b, int bFrom, long[] target, int targetFrom, int length);
+
+    /**
+     * Returns the number of bits set both in <code>a</code> and in <code>b</code>, which have the same length
+     * */
+    int andCardinality(long[] a, long[] b);
+
+    /**
+     * Returns the kernel called <code>name</code>: <code>scalar</code> or <code>vector</code>. If the vector kernel
+     * isn't available, because its class hasn't been compiled or because the module
+     * <code>jdk.incubator.vector</code> hasn't been added to the JVM, the scalar kernel is returned.
+     * */
+    static BitsetKernel create(String name) {
+        if (name.equalsIgnoreCase("scalar"))
+            return new ScalarBitsetKernel();
+        if (!name.equalsIgnoreCase("vector"))
+            throw new IllegalArgumentException("Unknown bitset kernel: " + name);
+        try {
+            return (BitsetKernel) Class.forName("VectorBitsetKernel").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarBitsetKernel();
+        }
+    }
+}
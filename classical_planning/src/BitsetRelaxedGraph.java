@@ -0,0 +1,322 @@
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.operator.Condition;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that computes the SUM value of the relaxed planning graph of a state on dense bitsets, one level at a time,
+ * instead of one fluent at a time with a counter of preconditions per operator. It gives the same values as the
+ * expansion of <code>MyHeuristic</code>.
+ *
+ * The fluents reached at a level form a bitset, where the positive fluents come first and the negative fluents (a
+ * fluent being false) start at the next word. The preconditions and the effects of every operator are rows of the
+ * same bitset, kept sparse since an operator has only a few of them. At every level:
+ * <ul>
+ *     <li>the operators having a precondition among the fluents new at that level are tested: an operator is
+ *     triggered if its row of preconditions is a subset of the reached fluents, and its row of effects is or-ed into
+ *     the fluents of the next level;</li>
+ *     <li>the new fluents of the next level are the difference between the two bitsets, and the goals reached at the
+ *     next level are counted as the bits of the intersection between the goals and the new fluents.</li>
+ * </ul>
+ * The operations on the words are done by a <code>BitsetKernel</code>, that can use the Vector API of the JDK.
+ * */
+public class BitsetRelaxedGraph {
+
+    private static final int WORD_SIZE = 64;
+
+    private final BitsetKernel kernel;
+
+    private final int nbFluents;
+
+    /**
+     * The word where the negative fluents start, and the number of words of the bitsets
+     * */
+    private final int negativeOffset;
+
+    private final int nbWords;
+
+    /**
+     * For each fluent of the bitset, the operators having it as a precondition. The operators without preconditions
+     * are not listed
+     * */
+    private final int[][] precondOperators;
+
+    private final int[] operatorsWithoutPrecond;
+
+    /**
+     * The rows of the preconditions and of the effects of the operators: the row of the operator <code>o</code> is
+     * in the positions <code>[first[o], first[o + 1])</code> of the arrays of words and masks
+     * */
+    private final int[] precondFirst;
+
+    private final int[] precondWords;
+
+    private final long[] precondMasks;
+
+    private final int[] effectFirst;
+
+    private final int[] effectWords;
+
+    private final long[] effectMasks;
+
+    /**
+     * The relevant negative fluents, in the positive half of a bitset, and the goals
+     * */
+    private final long[] relevantNegatives;
+
+    private final long[] goals;
+
+    private final int nbGoals;
+
+    /**
+     * Scratch bitsets reused by every evaluation: the fluents reached until the current level, the ones reached
+     * until the next level and the new ones
+     * */
+    private long[] reached;
+
+    private long[] next;
+
+    private final long[] newFluents;
+
+    /**
+     * The evaluation in which every operator has been triggered, so that the operators don't have to be cleared
+     * before every evaluation
+     * */
+    private final int[] triggered;
+
+    private int evaluation;
+
+    /**
+     * The level, counted across all the evaluations, in which every operator has last been tested, so that an
+     * operator having several preconditions new at the same level is tested only once
+     * */
+    private final int[] tested;
+
+    private int round;
+
+    /**
+     * Creates the bitset graph from the edges of the relaxed planning graph of <code>MyHeuristic</code>.
+     *
+     * @param kernel the operations on the words
+     * @param nbFluents the number of fluents of the problem
+     * @param pPrecondOperators for each fluent, the operators having it as positive precondition
+     * @param nPrecondOperators for each fluent, the operators having it as negative precondition
+     * @param pEffectFluents for each operator, the fluents it makes true
+     * @param nEffectFluents for each operator, the relevant fluents it makes false
+     * @param preconditions for each operator, its preconditions
+     * @param operatorsWithoutPrecond the operators without preconditions
+     * @param pGoals the positive goals
+     * @param nGoals the negative goals
+     * @param nRelevantFluents the fluents that are a negative precondition or a negative goal
+     * */
+    public BitsetRelaxedGraph(BitsetKernel kernel, int nbFluents, int[][] pPrecondOperators,
+                              int[][] nPrecondOperators, int[][] pEffectFluents, int[][] nEffectFluents,
+                              Condition[] preconditions, int[] operatorsWithoutPrecond, int[] pGoals, int[] nGoals,
+                              int[] nRelevantFluents) {
+        this.kernel = kernel;
+        this.nbFluents = nbFluents;
+        this.negativeOffset = (nbFluents + WORD_SIZE - 1) / WORD_SIZE;
+        this.nbWords = 2 * this.negativeOffset;
+        final int nbOperators = pEffectFluents.length;
+
+        this.precondOperators = new int[this.nbWords * WORD_SIZE][];
+        Arrays.fill(this.precondOperators, new int[0]);
+        for (int p = 0; p < nbFluents; p++) {
+            this.precondOperators[p] = pPrecondOperators[p];
+            this.precondOperators[negative(p)] = nPrecondOperators[p];
+        }
+        this.operatorsWithoutPrecond = operatorsWithoutPrecond;
+
+        List<Integer> words = new ArrayList<>();
+        List<Long> masks = new ArrayList<>();
+        this.precondFirst = new int[nbOperators + 1];
+        for (int o = 0; o < nbOperators; o++) {
+            this.precondFirst[o] = words.size();
+            long[] row = new long[this.nbWords];
+            final BitVector pPre = preconditions[o].getPositiveFluents();
+            final BitVector nPre = preconditions[o].getNegativeFluents();
+            for (int p = pPre.nextSetBit(0); p >= 0; p = pPre.nextSetBit(p + 1))
+                set(row, p);
+            for (int p = nPre.nextSetBit(0); p >= 0; p = nPre.nextSetBit(p + 1))
+                set(row, negative(p));
+            addRow(row, words, masks);
+        }
+        this.precondFirst[nbOperators] = words.size();
+        this.precondWords = toIntArray(words);
+        this.precondMasks = toLongArray(masks);
+
+        words.clear();
+        masks.clear();
+        this.effectFirst = new int[nbOperators + 1];
+        for (int o = 0; o < nbOperators; o++) {
+            this.effectFirst[o] = words.size();
+            long[] row = new long[this.nbWords];
+            for (int p : pEffectFluents[o])
+                set(row, p);
+            for (int p : nEffectFluents[o])
+                set(row, negative(p));
+            addRow(row, words, masks);
+        }
+        this.effectFirst[nbOperators] = words.size();
+        this.effectWords = toIntArray(words);
+        this.effectMasks = toLongArray(masks);
+
+        this.relevantNegatives = new long[this.negativeOffset];
+        for (int p : nRelevantFluents)
+            set(this.relevantNegatives, p);
+
+        this.goals = new long[this.nbWords];
+        for (int g : pGoals)
+            set(this.goals, g);
+        for (int g : nGoals)
+            set(this.goals, negative(g));
+        this.nbGoals = pGoals.length + nGoals.length;
+
+        this.reached = new long[this.nbWords];
+        this.next = new long[this.nbWords];
+        this.newFluents = new long[this.nbWords];
+        this.triggered = new int[nbOperators];
+        this.evaluation = 0;
+        this.tested = new int[nbOperators];
+        this.round = 0;
+    }
+
+    /**
+     * Creates a bitset graph with the same kernel and rows as <code>other</code>, which are shared, but with its own
+     * scratch bitsets, so that the two graphs can be used at the same time by different threads
+     * */
+    public BitsetRelaxedGraph(BitsetRelaxedGraph other) {
+        this.kernel = other.kernel;
+        this.nbFluents = other.nbFluents;
+        this.negativeOffset = other.negativeOffset;
+        this.nbWords = other.nbWords;
+        this.precondOperators = other.precondOperators;
+        this.operatorsWithoutPrecond = other.operatorsWithoutPrecond;
+        this.precondFirst = other.precondFirst;
+        this.precondWords = other.precondWords;
+        this.precondMasks = other.precondMasks;
+        this.effectFirst = other.effectFirst;
+        this.effectWords = other.effectWords;
+        this.effectMasks = other.effectMasks;
+        this.relevantNegatives = other.relevantNegatives;
+        this.goals = other.goals;
+        this.nbGoals = other.nbGoals;
+
+        this.reached = new long[this.nbWords];
+        this.next = new long[this.nbWords];
+        this.newFluents = new long[this.nbWords];
+        this.triggered = new int[other.triggered.length];
+        this.evaluation = 0;
+        this.tested = new int[other.tested.length];
+        this.round = 0;
+    }
+
+    /**
+     * Returns the index in the bitsets of the negative fluent of <code>p</code>
+     * */
+    private int negative(int p) {
+        return this.negativeOffset * WORD_SIZE + p;
+    }
+
+    private static void set(long[] bits, int p) {
+        bits[p / WORD_SIZE] |= 1L << p;
+    }
+
+    /**
+     * Appends the non-empty words of a dense row to the lists of words and masks
+     * */
+    private static void addRow(long[] row, List<Integer> words, List<Long> masks) {
+        for (int w = 0; w < row.length; w++) {
+            if (row[w] != 0) {
+                words.add(w);
+                masks.add(row[w]);
+            }
+        }
+    }
+
+    private static int[] toIntArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    private static long[] toLongArray(List<Long> list) {
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    /**
+     * Returns the SUM value of the relaxed planning graph of <code>state</code>, or <code>Integer.MAX_VALUE</code>
+     * if the goal can't be reached from it
+     * */
+    public int evaluate(State state) {
+        this.evaluation++;
+
+        // The fluents true in the state, and the relevant fluents false in it, are at level 0
+        Arrays.fill(this.reached, 0, this.negativeOffset, 0L);
+        for (int p = state.nextSetBit(0); p >= 0 && p < this.nbFluents; p = state.nextSetBit(p + 1))
+            set(this.reached, p);
+        this.kernel.andNot(this.relevantNegatives, 0, this.reached, 0, this.reached, this.negativeOffset,
+                this.negativeOffset);
+        System.arraycopy(this.reached, 0, this.newFluents, 0, this.nbWords);
+
+        int goalsReached = this.kernel.andCardinality(this.goals, this.reached);
+        int value = 0;
+        int level = 0;
+
+        while (goalsReached < this.nbGoals) {
+            System.arraycopy(this.reached, 0, this.next, 0, this.nbWords);
+            boolean changed = false;
+            this.round++;
+
+            if (level == 0)
+                for (int o : this.operatorsWithoutPrecond)
+                    changed |= trigger(o);
+
+            // Only the operators with a precondition reached at this level can be triggered at this level
+            for (int w = 0; w < this.nbWords; w++) {
+                for (long bits = this.newFluents[w]; bits != 0; bits &= bits - 1) {
+                    final int p = w * WORD_SIZE + Long.numberOfTrailingZeros(bits);
+                    for (int o : this.precondOperators[p]) {
+                        if (this.triggered[o] == this.evaluation || this.tested[o] == this.round)
+                            continue;
+                        this.tested[o] = this.round;
+                        if (this.kernel.isSubset(this.precondWords, this.precondMasks, this.precondFirst[o],
+                                this.precondFirst[o + 1], this.reached))
+                            changed |= trigger(o);
+                    }
+                }
+            }
+
+            if (!changed)
+                return Integer.MAX_VALUE;
+
+            this.kernel.andNot(this.next, 0, this.reached, 0, this.newFluents, 0, this.nbWords);
+            level++;
+            final int newGoals = this.kernel.andCardinality(this.goals, this.newFluents);
+            goalsReached += newGoals;
+            value += newGoals * level;
+
+            long[] swap = this.reached;
+            this.reached = this.next;
+            this.next = swap;
+        }
+        return value;
+    }
+
+    /**
+     * Marks the operator <code>o</code> as triggered and adds its effects to the fluents of the next level. Returns
+     * true if some of them weren't reached yet.
+     * */
+    private boolean trigger(int o) {
+        this.triggered[o] = this.evaluation;
+        return this.kernel.or(this.effectWords, this.effectMasks, this.effectFirst[o], this.effectFirst[o + 1],
+                this.next);
+    }
+}
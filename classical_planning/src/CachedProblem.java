@@ -0,0 +1,309 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.Expression;
+import fr.uga.pddl4j.parser.RequireKey;
+import fr.uga.pddl4j.parser.Symbol;
+import fr.uga.pddl4j.plan.Hierarchy;
+import fr.uga.pddl4j.plan.Plan;
+import fr.uga.pddl4j.problem.Fluent;
+import fr.uga.pddl4j.problem.Goal;
+import fr.uga.pddl4j.problem.InitialState;
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.Task;
+import fr.uga.pddl4j.problem.operator.AbstractInstantiatedOperator;
+import fr.uga.pddl4j.problem.operator.Action;
+import fr.uga.pddl4j.problem.operator.Condition;
+import fr.uga.pddl4j.problem.operator.ConditionalEffect;
+import fr.uga.pddl4j.problem.operator.DurativeAction;
+import fr.uga.pddl4j.problem.operator.DurativeMethod;
+import fr.uga.pddl4j.problem.operator.Effect;
+import fr.uga.pddl4j.problem.operator.Method;
+import fr.uga.pddl4j.problem.operator.TaskNetwork;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A grounded problem read from the files of <code>GroundingCache</code>, without parsing nor grounding. It has what
+ * the planners read of a grounded <code>DefaultProblem</code>: the types, the constants and the predicates by name,
+ * the fluents, the actions with their preconditions and their conditional effects, the initial state and the goal,
+ * and besides them the <code>DomainModel</code> of the problem, read from the same file. A classical problem has no
+ * durative actions, methods nor tasks, so their lists are empty.
+ *
+ * The rest of what pddl4j keeps while grounding (the parsed problem, the requirements, the domains and the
+ * signatures of the predicates) is not in the file, and asking for it throws
+ * <code>UnsupportedOperationException</code>. Only the fluents, the short form of the actions and the plans can be
+ * printed, in the same format as <code>DefaultProblem</code>.
+ * */
+public class CachedProblem implements Problem {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> types;
+
+    private final List<String> constantSymbols;
+
+    private final List<String> predicateSymbols;
+
+    private final List<Fluent> fluents;
+
+    private final List<Action> actions;
+
+    private final InitialState initialState;
+
+    private final Goal goal;
+
+    private final boolean solvable;
+
+    /**
+     * The model read with the problem. It's not serialized, and compiled again from the actions if the problem has
+     * been deserialized
+     * */
+    private transient DomainModel model;
+
+    public CachedProblem(List<String> types, List<String> constantSymbols, List<String> predicateSymbols,
+                         List<Fluent> fluents, List<Action> actions, InitialState initialState, Goal goal,
+                         boolean solvable, DomainModel model) {
+        this.types = types;
+        this.constantSymbols = constantSymbols;
+        this.predicateSymbols = predicateSymbols;
+        this.fluents = fluents;
+        this.actions = actions;
+        this.initialState = initialState;
+        this.goal = goal;
+        this.solvable = solvable;
+        this.model = model;
+    }
+
+    /**
+     * Returns the model of the domain compiled when the problem was stored, so that it's not compiled again
+     * */
+    public synchronized DomainModel getModel() {
+        if (this.model == null)
+            this.model = new DomainModel(this);
+        return this.model;
+    }
+
+    @Override
+    public List<String> getTypes() {
+        return this.types;
+    }
+
+    @Override
+    public List<String> getConstantSymbols() {
+        return this.constantSymbols;
+    }
+
+    @Override
+    public List<String> getPredicateSymbols() {
+        return this.predicateSymbols;
+    }
+
+    @Override
+    public List<Fluent> getFluents() {
+        return this.fluents;
+    }
+
+    @Override
+    public List<Action> getActions() {
+        return this.actions;
+    }
+
+    @Override
+    public InitialState getInitialState() {
+        return this.initialState;
+    }
+
+    @Override
+    public Condition getGoal() {
+        return this.goal;
+    }
+
+    @Override
+    public boolean isSolvable() {
+        return this.solvable;
+    }
+
+    /**
+     * Does nothing: the problem has been grounded before being stored
+     * */
+    @Override
+    public void instantiate() {
+    }
+
+    @Override
+    public List<DurativeAction> getDurativeActions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Method> getMethods() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<DurativeMethod> getDurativeMethods() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<List<Integer>> getTaskResolvers() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Returns the fluent as <code>(predicate constant...)</code>
+     * */
+    @Override
+    public String toString(Fluent fluent) {
+        StringBuilder str = new StringBuilder("(").append(this.predicateSymbols.get(fluent.getSymbol()));
+        for (int argument : fluent.getArguments())
+            str.append(" ").append(this.constantSymbols.get(argument));
+        return str.append(")").toString();
+    }
+
+    /**
+     * Returns the name of the operator followed by the constants of its parameters, or <code>?</code> for the ones
+     * without a value
+     * */
+    @Override
+    public String toShortString(AbstractInstantiatedOperator operator) {
+        StringBuilder str = new StringBuilder(operator.getName());
+        for (int i = 0; i < operator.arity(); i++) {
+            final int value = operator.getValueOfParameter(i);
+            str.append(value == -1 ? " ?" : " " + this.constantSymbols.get(value));
+        }
+        return str.toString();
+    }
+
+    /**
+     * Returns one line per action of the plan, with its time, the action aligned to the right and its duration
+     * */
+    @Override
+    public String toString(Plan plan) {
+        int width = 0;
+        for (int time : plan.timeSpecifiers())
+            for (Action action : plan.getActionSet(time))
+                width = Integer.max(width, toShortString(action).length());
+        final int digits = (int) Math.log10(plan.timeSpecifiers().size()) + 1;
+        final String format = "%0" + digits + "d: (%" + width + "s) [%d]%n";
+
+        StringBuilder str = new StringBuilder();
+        for (int time : plan.timeSpecifiers())
+            for (Action action : plan.getActionSet(time))
+                str.append(String.format(format, time, toShortString(action),
+                        (int) action.getDuration().getValue()));
+        return str.toString();
+    }
+
+    @Override
+    public String toString(Action action) {
+        throw notKept("the text of the actions");
+    }
+
+    @Override
+    public DefaultParsedProblem getParsedProblem() {
+        throw notKept("the parsed problem");
+    }
+
+    @Override
+    public Set<RequireKey> getRequirements() {
+        throw notKept("the requirements");
+    }
+
+    @Override
+    public Set<RequireKey> getAcceptedRequirements() {
+        throw notKept("the requirements");
+    }
+
+    @Override
+    public Map<Integer, Set<Symbol<Integer>>> getDomains() {
+        throw notKept("the domains of the types");
+    }
+
+    @Override
+    public List<List<Symbol<Integer>>> getPredicateSignatures() {
+        throw notKept("the signatures of the predicates");
+    }
+
+    @Override
+    public TaskNetwork getInitialTaskNetwork() {
+        throw notKept("a task network");
+    }
+
+    @Override
+    public boolean isTotallyOrdered() {
+        throw notKept("a task network");
+    }
+
+    @Override
+    public boolean simplify(Expression<Integer> expression) {
+        throw notKept("the expressions of the domain");
+    }
+
+    @Override
+    public String toString(DurativeAction action) {
+        throw notKept("a durative action");
+    }
+
+    @Override
+    public String toString(Method method) {
+        throw notKept("a method");
+    }
+
+    @Override
+    public String toString(DurativeMethod method) {
+        throw notKept("a durative method");
+    }
+
+    @Override
+    public String toString(Task task) {
+        throw notKept("a task");
+    }
+
+    @Override
+    public String toString(TaskNetwork network) {
+        throw notKept("a task network");
+    }
+
+    @Override
+    public String toString(Hierarchy hierarchy) {
+        throw notKept("a hierarchy");
+    }
+
+    @Override
+    public String toString(Condition condition) {
+        throw notKept("the text of the conditions");
+    }
+
+    @Override
+    public String toString(Effect effect) {
+        throw notKept("the text of the effects");
+    }
+
+    @Override
+    public String toString(State state) {
+        throw notKept("the text of the states");
+    }
+
+    @Override
+    public String toString(InitialState state) {
+        throw notKept("the text of the initial state");
+    }
+
+    @Override
+    public String toString(ConditionalEffect effect) {
+        throw notKept("the text of the conditional effects");
+    }
+
+    private static UnsupportedOperationException notKept(String what) {
+        return new UnsupportedOperationException("A problem read from the grounding cache doesn't keep " + what);
+    }
+}
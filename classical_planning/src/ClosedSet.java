@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * The set of the states already explored by the search, kept as their Zobrist fingerprints (see <code>Zobrist</code>)
+ * in an open-addressing table of primitive arrays, with linear probing. Together with every fingerprint it stores the
+ * smallest cost at which the state has been explored, so that a state reached again by a cheaper path can be explored
+ * again.
+ *
+ * The nodes themselves are not kept, so a node that leaves the frontier and has no successors in it can be collected,
+ * together with the part of its path no longer used. Each state takes 12 bytes in the table, which is never more than
+ * three quarters full: 16 bytes per state on average.
+ * */
+public class ClosedSet {
+
+    /**
+     * The value marking an empty slot. A fingerprint equal to it is stored as <code>ZERO_REPLACEMENT</code>
+     * */
+    private static final long EMPTY = 0L;
+
+    private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+    private long[] fingerprints;
+
+    private int[] costs;
+
+    /**
+     * The shift that leaves the top log2(capacity) bits of a mixed fingerprint, i.e. its first slot
+     * */
+    private int shift;
+
+    private int size;
+
+    /**
+     * Number of states beyond which the table is doubled
+     * */
+    private int threshold;
+
+    public ClosedSet() {
+        this(1024);
+    }
+
+    public ClosedSet(int capacity) {
+        int slots = Integer.highestOneBit(Integer.max(capacity, 16) - 1) << 1;
+        this.fingerprints = new long[slots];
+        this.costs = new int[slots];
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(slots);
+        this.size = 0;
+        this.threshold = slots / 4 * 3;
+    }
+
+    /**
+     * Returns the smallest cost at which the state with the given fingerprint has been explored, or
+     * <code>Integer.MAX_VALUE</code> if it has never been explored
+     * */
+    public int getCost(long fingerprint) {
+        final long f = fingerprint == EMPTY ? ZERO_REPLACEMENT : fingerprint;
+        final int mask = this.fingerprints.length - 1;
+        for (int i = slot(f, this.shift); ; i = (i + 1) & mask) {
+            final long stored = this.fingerprints[i];
+            if (stored == f)
+                return this.costs[i];
+            if (stored == EMPTY)
+                return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns true if the state with the given fingerprint has been explored at a cost not greater than
+     * <code>cost</code>, i.e. if a node reaching it with that cost doesn't need to be explored
+     * */
+    public boolean contains(long fingerprint, int cost) {
+        return getCost(fingerprint) <= cost;
+    }
+
+    /**
+     * Marks as explored at <code>cost</code> the state with the given fingerprint. Returns false, without changing
+     * anything, if it had already been explored at a cost not greater than that; returns true if it's new or if the
+     * new cost is smaller, in which case the state is reopened with that cost.
+     * */
+    public boolean add(long fingerprint, int cost) {
+        final long f = fingerprint == EMPTY ? ZERO_REPLACEMENT : fingerprint;
+        final int mask = this.fingerprints.length - 1;
+        int i = slot(f, this.shift);
+        for (; this.fingerprints[i] != EMPTY; i = (i + 1) & mask) {
+            if (this.fingerprints[i] == f) {
+                if (this.costs[i] <= cost)
+                    return false;
+                this.costs[i] = cost;
+                return true;
+            }
+        }
+        this.fingerprints[i] = f;
+        this.costs[i] = cost;
+        if (++this.size > this.threshold)
+            resize();
+        return true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the number of bytes taken by the two arrays of the table
+     * */
+    public long getMemoryUsed() {
+        return (long) this.fingerprints.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    public void clear() {
+        Arrays.fill(this.fingerprints, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the first slot to probe for a fingerprint: the top bits of the mixed fingerprint, which are the most
+     * mixed ones, as many as the table needs to index all its slots whatever its size
+     * */
+    private static int slot(long fingerprint, int shift) {
+        return (int) ((fingerprint * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Doubles the table, moving every state to its slot in the new one
+     * */
+    private void resize() {
+        final long[] oldFingerprints = this.fingerprints;
+        final int[] oldCosts = this.costs;
+        this.fingerprints = new long[oldFingerprints.length * 2];
+        this.costs = new int[oldCosts.length * 2];
+        this.threshold = this.fingerprints.length / 4 * 3;
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(this.fingerprints.length);
+        final int mask = this.fingerprints.length - 1;
+        for (int j = 0; j < oldFingerprints.length; j++) {
+            final long f = oldFingerprints[j];
+            if (f == EMPTY)
+                continue;
+            int i = slot(f, this.shift);
+            while (this.fingerprints[i] != EMPTY)
+                i = (i + 1) & mask;
+            this.fingerprints[i] = f;
+            this.costs[i] = oldCosts[j];
+        }
+    }
+}
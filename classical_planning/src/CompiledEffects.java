@@ -0,0 +1,196 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.operator.Action;
+import fr.uga.pddl4j.problem.operator.Condition;
+import fr.uga.pddl4j.problem.operator.ConditionalEffect;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class that compiles, once per problem, the effects of every grounded action into flat bit masks, so that the
+ * successor of a state is obtained with a copy of the state followed by a few word-level <code>andNot</code> and
+ * <code>or</code> operations, without evaluating any <code>Condition</code> or <code>Effect</code> object.
+ *
+ * The effects of an action are compiled into a list of groups: each group has a mask of fluents to clear, a mask of
+ * fluents to set and, if it comes from a conditional effect, the condition under which it's applied. Conditions made
+ * of a single positive fluent, like <code>(isLoadedOnCarrier ?b ?c)</code> in <code>move_agent_and_carrier</code>,
+ * are kept as the index of that fluent; other conditions are kept as a pair of masks. When no group of an action adds
+ * a fluent that a following group deletes, the order of the groups is irrelevant and all the unconditional effects
+ * are merged into the first group; otherwise every conditional effect is kept as a group, in its original order.
+ * */
+public class CompiledEffects {
+
+    /**
+     * Value of <code>conditionFluent</code> for the groups that are always applied
+     * */
+    private static final int ALWAYS = -1;
+
+    /**
+     * Value of <code>conditionFluent</code> for the groups whose condition is kept as a pair of masks
+     * */
+    private static final int MASKED = -2;
+
+    /**
+     * For each action, the range <code>[firstGroup[a], firstGroup[a+1])</code> of its groups
+     * */
+    private final int[] firstGroup;
+
+    /**
+     * For each group, the single fluent of its condition, <code>ALWAYS</code> or <code>MASKED</code>
+     * */
+    private final int[] conditionFluent;
+
+    /**
+     * For each group with a <code>MASKED</code> condition, the fluents that must be true
+     * */
+    private final BitVector[] conditionPositive;
+
+    /**
+     * For each group with a <code>MASKED</code> condition, the fluents that must be false
+     * */
+    private final BitVector[] conditionNegative;
+
+    /**
+     * For each group, the fluents to set, or null if there are none
+     * */
+    private final BitVector[] addMask;
+
+    /**
+     * For each group, the fluents to clear, or null if there are none
+     * */
+    private final BitVector[] deleteMask;
+
+    public CompiledEffects(Problem problem) {
+        final List<Action> actions = problem.getActions();
+
+        List<Integer> conditions = new ArrayList<>();
+        List<BitVector> positives = new ArrayList<>();
+        List<BitVector> negatives = new ArrayList<>();
+        List<BitVector> adds = new ArrayList<>();
+        List<BitVector> deletes = new ArrayList<>();
+
+        this.firstGroup = new int[actions.size() + 1];
+
+        for (int a = 0; a < actions.size(); a++) {
+            this.firstGroup[a] = conditions.size();
+            final List<ConditionalEffect> effects = actions.get(a).getConditionalEffects();
+
+            if (isOrderIndependent(effects)) {
+                // Merge all the unconditional effects into a single group, placed first
+                BitVector add = new BitVector();
+                BitVector delete = new BitVector();
+                for (ConditionalEffect ce : effects) {
+                    if (ce.getCondition().isEmpty()) {
+                        add.or(ce.getEffect().getPositiveFluents());
+                        delete.or(ce.getEffect().getNegativeFluents());
+                    }
+                }
+                if (!add.isEmpty() || !delete.isEmpty())
+                    addGroup(new Condition(), add, delete, conditions, positives, negatives, adds, deletes);
+
+                for (ConditionalEffect ce : effects)
+                    if (!ce.getCondition().isEmpty())
+                        addGroup(ce.getCondition(), ce.getEffect().getPositiveFluents(),
+                                ce.getEffect().getNegativeFluents(), conditions, positives, negatives, adds, deletes);
+            }
+            else {
+                for (ConditionalEffect ce : effects)
+                    addGroup(ce.getCondition(), ce.getEffect().getPositiveFluents(),
+                            ce.getEffect().getNegativeFluents(), conditions, positives, negatives, adds, deletes);
+            }
+        }
+        this.firstGroup[actions.size()] = conditions.size();
+
+        this.conditionFluent = new int[conditions.size()];
+        for (int g = 0; g < this.conditionFluent.length; g++)
+            this.conditionFluent[g] = conditions.get(g);
+        this.conditionPositive = positives.toArray(new BitVector[0]);
+        this.conditionNegative = negatives.toArray(new BitVector[0]);
+        this.addMask = adds.toArray(new BitVector[0]);
+        this.deleteMask = deletes.toArray(new BitVector[0]);
+    }
+
+    /**
+     * Returns true if no effect adds a fluent deleted by an effect that follows it, i.e. if applying the effects
+     * in any order gives the same state
+     * */
+    private static boolean isOrderIndependent(List<ConditionalEffect> effects) {
+        for (int i = 0; i < effects.size(); i++)
+            for (int j = 0; j < effects.size(); j++)
+                if (i != j && effects.get(i).getEffect().getPositiveFluents()
+                        .intersects(effects.get(j).getEffect().getNegativeFluents()))
+                    return false;
+        return true;
+    }
+
+    /**
+     * Appends a group to the lists under construction
+     * */
+    private static void addGroup(Condition condition, BitVector add, BitVector delete, List<Integer> conditions,
+                                 List<BitVector> positives, List<BitVector> negatives, List<BitVector> adds,
+                                 List<BitVector> deletes) {
+        final BitVector pCond = condition.getPositiveFluents();
+        final BitVector nCond = condition.getNegativeFluents();
+
+        if (condition.isEmpty()) {
+            conditions.add(ALWAYS);
+            positives.add(null);
+            negatives.add(null);
+        }
+        else if (nCond.isEmpty() && pCond.cardinality() == 1) {
+            conditions.add(pCond.nextSetBit(0));
+            positives.add(null);
+            negatives.add(null);
+        }
+        else {
+            conditions.add(MASKED);
+            positives.add(new BitVector(pCond));
+            negatives.add(new BitVector(nCond));
+        }
+        adds.add(add.isEmpty() ? null : new BitVector(add));
+        deletes.add(delete.isEmpty() ? null : new BitVector(delete));
+    }
+
+    /**
+     * Returns the state obtained by applying the action with index <code>actionIndex</code> in
+     * <code>problem.getActions()</code> to <code>state</code>. The conditions of the conditional effects are
+     * evaluated on <code>state</code>, which is not modified.
+     * */
+    public State apply(State state, int actionIndex) {
+        State next = new State(state);
+        applyGroups(state, actionIndex, next);
+        return next;
+    }
+
+    /**
+     * Writes in <code>next</code> the state obtained by applying the action with index <code>actionIndex</code> to
+     * <code>state</code>, which is not modified, without allocating a new state: <code>next</code> is overwritten in
+     * place, and it must be a different object than <code>state</code>.
+     * */
+    public void apply(State state, int actionIndex, State next) {
+        next.clear();
+        next.or(state);
+        applyGroups(state, actionIndex, next);
+    }
+
+    /**
+     * Applies to <code>next</code>, a copy of <code>state</code>, the groups of the action whose conditions hold in
+     * <code>state</code>
+     * */
+    private void applyGroups(State state, int actionIndex, State next) {
+        for (int g = this.firstGroup[actionIndex]; g < this.firstGroup[actionIndex + 1]; g++) {
+            final int condition = this.conditionFluent[g];
+            if (condition == ALWAYS
+                    || (condition >= 0 && state.get(condition))
+                    || (condition == MASKED && state.include(this.conditionPositive[g])
+                        && state.exclude(this.conditionNegative[g]))) {
+                if (this.deleteMask[g] != null)
+                    next.andNot(this.deleteMask[g]);
+                if (this.addMask[g] != null)
+                    next.or(this.addMask[g]);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * If an agent performs a move action, the action of that agent which immediately follows it must not be another
+ * move, otherwise the first move was useless. The last action performed by every agent is kept in the facts of the
+ * nodes (see <code>Node.getLastActionKind</code>), so the previous action of the agent is read from the parent of the
+ * node instead of walking up the path.
+ * */
+public class ConsecutiveMovesRule implements PruningRule {
+
+    private final DomainModel model;
+
+    public ConsecutiveMovesRule(DomainModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public String getName() {
+        return "consecutive-moves";
+    }
+
+    @Override
+    public int getCost() {
+        return 2;
+    }
+
+    @Override
+    public boolean prune(Node node) {
+        final int kind = node.getActionKind();
+        if (!DomainModel.isMove(kind))
+            return false;
+        final int agent = node.getAction().getInstantiations()[DomainModel.agentOffset(kind)];
+        return DomainModel.isMove(node.getParent().getLastActionKind(this.model.getIndex(agent)));
+    }
+}
@@ -0,0 +1,493 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.ParsedDomain;
+import fr.uga.pddl4j.parser.Parser;
+import fr.uga.pddl4j.parser.TypedSymbol;
+import fr.uga.pddl4j.plan.Plan;
+import fr.uga.pddl4j.plan.SequentialPlan;
+import fr.uga.pddl4j.problem.Fluent;
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.operator.Action;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Planner that splits a problem among teams, each one made of an agent and a carrier, which serve disjoint sets of
+ * people: every team gets its own problem, solved by its own <code>MyAlgorithm</code>, all at the same time, and the
+ * plans of the teams are merged into a single plan of the whole problem. The search of every team only sees the
+ * objects of the team, so its cost grows with the size of the team and not with the size of the fleet.
+ *
+ * The problem is split as follows:
+ * <ul>
+ *     <li>the i-th agent and the i-th carrier make the i-th team, with the box places that belong to the carrier,
+ *     which are its capacity; the carriers without box places and the agents and carriers left without a partner
+ *     stay at the depot;</li>
+ *     <li>the boxes are dealt to the teams in turn, from the one with the largest capacity, until every team has as
+ *     many boxes as box places, so that a team never waits for a box held by another one; the boxes left stay at
+ *     the depot;</li>
+ *     <li>the goals are grouped by the location of the person, since a team that goes to a location can serve
+ *     everybody there, and the locations are assigned, from the one with the most goals, to the team with the
+ *     fewest goals per box place so far.</li>
+ * </ul>
+ * The problem of a team is written in PDDL with only its objects, the facts of the initial state about them and its
+ * goals, and it's parsed and grounded again, which is cheap since it's small.
+ *
+ * The plans of the teams are interleaved, an action of every team in turn, and the actions are mapped to the ones
+ * of the whole problem by name and parameters. The teams share no object, so the merged plan is valid; it's
+ * nonetheless executed from the initial state of the whole problem, and if an action is not applicable or the goal
+ * is not reached the merge is in conflict. When the problem can't be split, because it has less than two teams with
+ * goals or doesn't start with everything at the depot, or when a team finds no plan or the merge is in conflict, the
+ * planner returns null, and the caller searches the whole problem (see <code>MyAlgorithm.My_DECOMPOSED</code>).
+ * */
+public class DecompositionPlanner {
+
+    /**
+     * The location where the agents, the carriers and the boxes start, a constant of the domain
+     * */
+    private static final String DEPOT = "depot";
+
+    private final File domainFile;
+
+    /**
+     * The name of the domain and its constants, which the problems of the teams refer to but must not declare
+     * */
+    private final String domainName;
+
+    private final Set<String> domainConstants = new HashSet<>();
+
+    /**
+     * Creates the planners of the teams, one per team
+     * */
+    private final Supplier<MyAlgorithm> planners;
+
+    private final int threads;
+
+    private final List<Team> teams = new ArrayList<>();
+
+    /**
+     * The model of the last problem
+     * */
+    private DomainModel model;
+
+    /**
+     * Why the last problem has not been solved by splitting it, or null
+     * */
+    private String failure;
+
+    /**
+     * @param domainFile the file of the domain, which the problems of the teams are parsed with
+     * @param planners the supplier of the planners of the teams
+     * @param threads the maximum number of teams solved at the same time
+     * @throws IOException if the domain can't be parsed
+     * */
+    public DecompositionPlanner(File domainFile, Supplier<MyAlgorithm> planners, int threads) throws IOException {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        Parser parser = new Parser();
+        ParsedDomain domain = parser.parseDomain(domainFile);
+        if (domain == null || !parser.getErrorManager().isEmpty())
+            throw new IOException("Cannot parse the domain " + domainFile);
+        this.domainFile = domainFile;
+        this.domainName = domain.getDomainName().getValue();
+        for (TypedSymbol<String> constant : domain.getConstants())
+            this.domainConstants.add(constant.getValue().toLowerCase());
+        this.planners = planners;
+        this.threads = threads;
+    }
+
+    /**
+     * Solves <code>problem</code> by splitting it among the teams, and returns the merged plan, or null if the
+     * problem can't be split, a team finds no plan or the merge is in conflict (see <code>getFailure</code>)
+     * */
+    public Plan solve(Problem problem) throws IOException, InterruptedException {
+        this.teams.clear();
+        this.failure = null;
+        if (!split(problem))
+            return null;
+
+        List<Callable<Plan>> tasks = new ArrayList<>();
+        for (Team team : this.teams)
+            tasks.add(() -> solve(problem, team));
+        ExecutorService pool = Executors.newFixedThreadPool(Integer.min(this.threads, this.teams.size()));
+        try {
+            List<Future<Plan>> plans = pool.invokeAll(tasks);
+            for (int t = 0; t < this.teams.size(); t++) {
+                try {
+                    this.teams.get(t).plan = plans.get(t).get();
+                }
+                catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException)
+                        throw (IOException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+                if (this.teams.get(t).plan == null) {
+                    this.failure = "no plan found for the team " + t;
+                    return null;
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return merge(problem);
+    }
+
+    /**
+     * Splits the problem among the teams, and returns false if it can't be split
+     * */
+    private boolean split(Problem problem) {
+        final DomainModel model = DomainModel.of(problem);
+        this.model = model;
+        final List<String> constants = problem.getConstantSymbols();
+        final int depot = indexOf(constants, DEPOT);
+
+        // Read the initial state: where the people are and to which carrier the box places belong. Everything else
+        // must be at the depot, empty and not loaded
+        final int[] location = new int[constants.size()];
+        final int[] carrierOfBoxPlace = new int[constants.size()];
+        Arrays.fill(location, -1);
+        Arrays.fill(carrierOfBoxPlace, -1);
+        final BitVector init = problem.getInitialState().getPositiveFluents();
+        for (int f = init.nextSetBit(0); f >= 0; f = init.nextSetBit(f + 1)) {
+            final Fluent fluent = problem.getFluents().get(f);
+            final int[] arguments = fluent.getArguments();
+            switch (problem.getPredicateSymbols().get(fluent.getSymbol()).toLowerCase()) {
+                case "at":
+                    location[arguments[0]] = arguments[1];
+                    final int type = model.getType(arguments[0]);
+                    if ((type == DomainModel.AGENT || type == DomainModel.CARRIER || type == DomainModel.BOX)
+                            && arguments[1] != depot)
+                        return fail("not everything starts at the depot");
+                    break;
+                case "boxplacebelongstocarrier":
+                    carrierOfBoxPlace[arguments[0]] = arguments[1];
+                    break;
+                case "isinsideabox":
+                case "isloadedoncarrier":
+                case "isoccupiedby":
+                    return fail("some boxes are already filled or loaded");
+                default:
+                    break;
+            }
+        }
+
+        // The goals, grouped by the location of the person
+        final BitVector goal = problem.getGoal().getPositiveFluents();
+        if (!problem.getGoal().getNegativeFluents().isEmpty())
+            return fail("the goal has negative fluents");
+        final Map<Integer, List<Integer>> goalsOfLocation = new HashMap<>();
+        for (int f = goal.nextSetBit(0); f >= 0; f = goal.nextSetBit(f + 1)) {
+            final Fluent fluent = problem.getFluents().get(f);
+            if (!problem.getPredicateSymbols().get(fluent.getSymbol()).equalsIgnoreCase("issatisfied"))
+                return fail("the goal is not only about the needs of the people");
+            goalsOfLocation.computeIfAbsent(location[fluent.getArguments()[0]], l -> new ArrayList<>()).add(f);
+        }
+
+        // The teams, with their box places, the largest first
+        final int[] agents = model.getAgents();
+        final int[] carriers = model.getCarriers();
+        for (int i = 0; i < Integer.min(agents.length, carriers.length); i++) {
+            Team team = new Team(agents[i], carriers[i]);
+            for (int boxPlace : model.getBoxPlaces())
+                if (carrierOfBoxPlace[boxPlace] == carriers[i])
+                    team.boxPlaces.add(boxPlace);
+            if (!team.boxPlaces.isEmpty())
+                this.teams.add(team);
+        }
+        this.teams.sort((a, b) -> Integer.compare(b.boxPlaces.size(), a.boxPlaces.size()));
+
+        // Deal the boxes in turn, until every team is full; the teams without boxes are dropped
+        final int[] boxes = model.getBoxes();
+        int dealt = 0;
+        for (boolean full = false; dealt < boxes.length && !full; ) {
+            full = true;
+            for (Team team : this.teams) {
+                if (dealt < boxes.length && team.boxes.size() < team.boxPlaces.size()) {
+                    team.boxes.add(boxes[dealt++]);
+                    full = false;
+                }
+            }
+        }
+        this.teams.removeIf(team -> team.boxes.isEmpty());
+        if (this.teams.size() < 2)
+            return fail("there are less than two teams with a box");
+
+        // Assign the locations, the busiest first, to the team with the fewest goals per box place
+        List<Integer> locations = new ArrayList<>(goalsOfLocation.keySet());
+        locations.sort((a, b) -> goalsOfLocation.get(a).size() != goalsOfLocation.get(b).size()
+                ? Integer.compare(goalsOfLocation.get(b).size(), goalsOfLocation.get(a).size())
+                : Integer.compare(a, b));
+        for (int l : locations) {
+            Team best = null;
+            for (Team team : this.teams)
+                if (best == null || team.goals.size() * best.boxPlaces.size()
+                        < best.goals.size() * team.boxPlaces.size())
+                    best = team;
+            best.locations.add(l);
+            best.goals.addAll(goalsOfLocation.get(l));
+        }
+        this.teams.removeIf(team -> team.goals.isEmpty());
+        if (this.teams.size() < 2)
+            return fail("the goals are all at the same location");
+
+        // The people of a team are the ones of its goals
+        for (Team team : this.teams) {
+            for (int f : team.goals) {
+                final int person = problem.getFluents().get(f).getArguments()[0];
+                if (!team.people.contains(person))
+                    team.people.add(person);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves the problem of <code>team</code>, and returns its plan or null
+     * */
+    private Plan solve(Problem problem, Team team) throws IOException {
+        final Path file = Files.createTempFile("team", ".pddl");
+        try {
+            Files.writeString(file, writeProblem(problem, team));
+            Parser parser = new Parser();
+            DefaultParsedProblem parsed = parser.parse(this.domainFile, file.toFile());
+            if (parsed == null || !parser.getErrorManager().isEmpty())
+                throw new IOException("Cannot parse the problem of the team of " + name(problem, team.agent));
+
+            MyAlgorithm planner = this.planners.get();
+            team.problem = planner.instantiate(parsed);
+            Plan plan = planner.solve(team.problem);
+            team.exploredNodes = planner.getExploredNodes();
+            team.heuristicEvaluations = planner.getHeuristicEvaluations();
+            return plan;
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Returns the text of the problem of <code>team</code>: its objects, the facts of the initial state that are
+     * only about them and its goals
+     * */
+    private String writeProblem(Problem problem, Team team) {
+        final DomainModel model = this.model;
+        final boolean[] member = new boolean[problem.getConstantSymbols().size()];
+        member[team.agent] = true;
+        member[team.carrier] = true;
+        for (List<Integer> objects : List.of(team.boxPlaces, team.boxes, team.locations, team.people))
+            for (int object : objects)
+                member[object] = true;
+        for (int content : model.getContents())
+            member[content] = true;
+        for (int object = 0; object < member.length; object++)
+            member[object] |= this.domainConstants.contains(name(problem, object));
+
+        StringBuilder pddl = new StringBuilder();
+        pddl.append("(define (problem team_").append(name(problem, team.agent)).append(")\n");
+        pddl.append("    (:domain ").append(this.domainName).append(")\n");
+        pddl.append("    (:objects\n");
+        for (int object = 0; object < member.length; object++) {
+            if (member[object] && !this.domainConstants.contains(name(problem, object)))
+                pddl.append("        ").append(name(problem, object)).append(" - ")
+                        .append(DomainModel.getTypeName(model.getType(object))).append("\n");
+        }
+        pddl.append("    )\n");
+
+        pddl.append("    (:init\n");
+        final BitVector init = problem.getInitialState().getPositiveFluents();
+        for (int f = init.nextSetBit(0); f >= 0; f = init.nextSetBit(f + 1)) {
+            final Fluent fluent = problem.getFluents().get(f);
+            boolean inTeam = true;
+            for (int argument : fluent.getArguments())
+                inTeam &= member[argument];
+            if (inTeam)
+                pddl.append("        ").append(problem.toString(fluent)).append("\n");
+        }
+        pddl.append("    )\n");
+
+        pddl.append("    (:goal (and\n");
+        for (int f : team.goals)
+            pddl.append("        ").append(problem.toString(problem.getFluents().get(f))).append("\n");
+        pddl.append("    ))\n)\n");
+        return pddl.toString();
+    }
+
+    /**
+     * Merges the plans of the teams, interleaving them, and returns the merged plan, or null if an action of a team
+     * has no match in the whole problem or the merged plan is not valid
+     * */
+    private Plan merge(Problem problem) {
+        // The indexes of the actions of the whole problem, by name and parameters
+        final List<Action> actions = problem.getActions();
+        final Map<String, Integer> indexes = new HashMap<>();
+        for (int a = 0; a < actions.size(); a++)
+            indexes.put(signature(problem, actions.get(a)), a);
+
+        final List<List<Integer>> plans = new ArrayList<>();
+        int length = 0;
+        for (Team team : this.teams) {
+            List<Integer> plan = new ArrayList<>();
+            for (Action action : team.plan.actions()) {
+                Integer match = indexes.get(signature(team.problem, action));
+                if (match == null) {
+                    this.failure = "the action " + signature(team.problem, action) + " is not in the problem";
+                    return null;
+                }
+                plan.add(match);
+            }
+            plans.add(plan);
+            length = Integer.max(length, plan.size());
+        }
+
+        // An action of every team in turn, executed from the initial state to check it. The effects are applied by
+        // CompiledEffects, as in the search, since State.apply ignores the conditions of the conditional effects
+        final CompiledEffects compiledEffects = new CompiledEffects(problem);
+        final SequentialPlan merged = new SequentialPlan();
+        State state = new State(problem.getInitialState());
+        for (int step = 0; step < length; step++) {
+            for (List<Integer> plan : plans) {
+                if (step >= plan.size())
+                    continue;
+                final Action action = actions.get(plan.get(step));
+                if (!state.satisfy(action.getPrecondition())) {
+                    this.failure = "the merged plans conflict at the action " + signature(problem, action);
+                    return null;
+                }
+                state = compiledEffects.apply(state, plan.get(step));
+                merged.add(merged.size(), action);
+            }
+        }
+        if (!state.satisfy(problem.getGoal())) {
+            this.failure = "the merged plans don't reach the goal";
+            return null;
+        }
+        return merged;
+    }
+
+    /**
+     * Returns why the last problem has not been solved by splitting it, or null if it has been
+     * */
+    public String getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Returns the number of nodes explored by the teams, summed
+     * */
+    public int getExploredNodes() {
+        int nodes = 0;
+        for (Team team : this.teams)
+            nodes += team.exploredNodes;
+        return nodes;
+    }
+
+    /**
+     * Returns the number of evaluations of the heuristic of the teams, summed
+     * */
+    public long getHeuristicEvaluations() {
+        long evaluations = 0;
+        for (Team team : this.teams)
+            evaluations += team.heuristicEvaluations;
+        return evaluations;
+    }
+
+    /**
+     * Returns the teams of the last problem, one per line, with their objects, their goals and the length of their
+     * plan
+     * */
+    public String describe(Problem problem) {
+        StringBuilder description = new StringBuilder();
+        for (Team team : this.teams) {
+            description.append(name(problem, team.agent)).append(" ").append(name(problem, team.carrier))
+                    .append(": ").append(names(problem, team.boxPlaces)).append(", ")
+                    .append(names(problem, team.boxes)).append(", locations ").append(names(problem, team.locations))
+                    .append(", ").append(team.goals.size()).append(" goals");
+            if (team.plan != null)
+                description.append(", plan of ").append(team.plan.size()).append(" steps, ")
+                        .append(team.exploredNodes).append(" explored nodes");
+            description.append("\n");
+        }
+        return description.toString();
+    }
+
+    private boolean fail(String failure) {
+        this.failure = failure;
+        return false;
+    }
+
+    private static String signature(Problem problem, Action action) {
+        StringBuilder signature = new StringBuilder(action.getName().toLowerCase());
+        for (int argument : action.getInstantiations())
+            signature.append(" ").append(name(problem, argument));
+        return signature.toString();
+    }
+
+    private static String name(Problem problem, int object) {
+        return problem.getConstantSymbols().get(object).toLowerCase();
+    }
+
+    private static String names(Problem problem, List<Integer> objects) {
+        StringBuilder names = new StringBuilder("{");
+        for (int i = 0; i < objects.size(); i++)
+            names.append(i > 0 ? " " : "").append(name(problem, objects.get(i)));
+        return names.append("}").toString();
+    }
+
+    private static int indexOf(List<String> names, String name) {
+        for (int i = 0; i < names.size(); i++)
+            if (names.get(i).equalsIgnoreCase(name))
+                return i;
+        return -1;
+    }
+
+    /**
+     * A team: an agent and a carrier with its box places, the boxes, the locations, the people and the goals
+     * assigned to it, and the plan found for it
+     * */
+    private static class Team {
+
+        final int agent;
+
+        final int carrier;
+
+        final List<Integer> boxPlaces = new ArrayList<>();
+
+        final List<Integer> boxes = new ArrayList<>();
+
+        final List<Integer> locations = new ArrayList<>();
+
+        final List<Integer> people = new ArrayList<>();
+
+        final List<Integer> goals = new ArrayList<>();
+
+        Problem problem;
+
+        Plan plan;
+
+        int exploredNodes;
+
+        long heuristicEvaluations;
+
+        Team(int agent, int carrier) {
+            this.agent = agent;
+            this.carrier = carrier;
+        }
+    }
+}
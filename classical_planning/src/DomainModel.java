@@ -0,0 +1,345 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.operator.Action;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The domain <code>emergency_services_logistics_domain</code> compiled once for a grounded problem, so that the search
+ * and the heuristic never look at the names of the actions or of the types again:
+ * <ul>
+ *     <li>the kind of every grounded action, an integer from <code>MOVE_AGENT</code> to
+ *     <code>UNLOAD_EMPTY_BOX_FROM_CARRIER</code>, indexed by the index of the action in the problem;</li>
+ *     <li>for every kind, the position of the agent, the carrier, the box, the content, the person and the locations
+ *     left and reached among the parameters of the action, or -1 if the action has no parameter with that role;</li>
+ *     <li>for every type, the objects of that type, in increasing order of identifier;</li>
+ *     <li>for every object, its type, or -1 if no action involves it, and its position among the objects of its
+ *     type.</li>
+ * </ul>
+ * The objects are identified by the integer that pddl4j assigns to the constants of the problem, the same used in
+ * the instantiations of the actions. The types are the ones of the parameters of the actions, read in the order in
+ * which the domain declares them: every object involved in at least an action gets its type. The model is never
+ * modified after the constructor, so it can be shared by any number of threads.
+ *
+ * The kinds of the actions and the types of the objects are stored with the problem by <code>GroundingCache</code>,
+ * so a problem read from the cache gives back its model without compiling the names again (see <code>of</code>).
+ * */
+public class DomainModel {
+
+    /**
+     * The kinds of action. They start from 1 since they're also the columns of the counters of the actions in the
+     * row of an agent in <code>Node</code>, after the identifier of the agent.
+     * */
+    public static final int MOVE_AGENT = 1;
+    public static final int MOVE_AGENT_AND_CARRIER = 2;
+    public static final int FILL_BOX_AND_LOAD_IT_ON_CARRIER = 3;
+    public static final int UNLOAD_BOX_DELIVER_ITS_CONTENT_AND_RELOAD_IT_ON_CARRIER = 4;
+    public static final int UNLOAD_EMPTY_BOX_FROM_CARRIER = 5;
+
+    /**
+     * The number of kinds of action, plus one, so that a kind can index an array
+     * */
+    public static final int NB_KINDS = 6;
+
+    /**
+     * The types of the objects
+     * */
+    public static final int AGENT = 0;
+    public static final int CARRIER = 1;
+    public static final int BOX = 2;
+    public static final int BOX_PLACE = 3;
+    public static final int LOCATION = 4;
+    public static final int CONTENT = 5;
+    public static final int PERSON = 6;
+
+    private static final String[] TYPE_NAMES = {"agent", "carrier", "box", "box_place", "location", "content",
+            "person"};
+
+    /**
+     * The names of the actions as declared in the domain, indexed by kind
+     * */
+    private static final String[] KIND_NAMES = {null, "move_agent", "move_agent_and_carrier",
+            "fill_box_and_load_it_on_carrier", "unload_box_deliver_its_content_and_reload_it_on_carrier",
+            "unload_empty_box_from_carrier"};
+
+    /**
+     * The types of the parameters of the actions, indexed by kind, in the order in which the domain declares them
+     * */
+    private static final int[][] PARAMETER_TYPES = {
+            {},
+            {AGENT, LOCATION, LOCATION},
+            {AGENT, CARRIER, LOCATION, LOCATION},
+            {AGENT, CARRIER, BOX, BOX_PLACE, CONTENT},
+            {AGENT, CARRIER, BOX, CONTENT, PERSON, LOCATION},
+            {AGENT, CARRIER, BOX, BOX_PLACE}
+    };
+
+    /**
+     * The position among the parameters of the action of the agent, of the carrier, of the box, of the content, of
+     * the person and of the locations left and reached by a move, indexed by kind, or -1 if the action has no such
+     * parameter
+     * */
+    private static final int[] AGENT_OFFSET = {-1, 0, 0, 0, 0, 0};
+    private static final int[] CARRIER_OFFSET = {-1, -1, 1, 1, 1, 1};
+    private static final int[] BOX_OFFSET = {-1, -1, -1, 2, 2, 2};
+    private static final int[] CONTENT_OFFSET = {-1, -1, -1, 4, 3, -1};
+    private static final int[] PERSON_OFFSET = {-1, -1, -1, -1, 4, -1};
+    private static final int[] ORIGIN_OFFSET = {-1, 1, 2, -1, -1, -1};
+    private static final int[] DESTINATION_OFFSET = {-1, 2, 3, -1, -1, -1};
+
+    /**
+     * The kind of every grounded action, indexed by the index of the action in the problem
+     * */
+    private final int[] actionKinds;
+
+    /**
+     * The objects of every type, indexed by type, in increasing order of identifier
+     * */
+    private final int[][] objectsOfType;
+
+    /**
+     * The type of every object, indexed by identifier, or -1 if no action involves the object
+     * */
+    private final int[] typeOfObject;
+
+    /**
+     * The position of every object among the objects of its type, indexed by identifier, or -1 if no action involves
+     * the object
+     * */
+    private final int[] indexOfObject;
+
+    public DomainModel(Problem problem) {
+        final List<Action> actions = problem.getActions();
+        this.actionKinds = new int[actions.size()];
+        this.typeOfObject = new int[problem.getConstantSymbols().size()];
+        this.indexOfObject = new int[this.typeOfObject.length];
+        Arrays.fill(this.typeOfObject, -1);
+        Arrays.fill(this.indexOfObject, -1);
+
+        // Compile the name of every action to its kind, and give to every object the type of the parameters it
+        // appears as
+        final int[] count = new int[TYPE_NAMES.length];
+        for (int i = 0; i < actions.size(); i++) {
+            final Action action = actions.get(i);
+            final int kind = kindOf(action.getName());
+            if (kind < 0)
+                throw new IllegalArgumentException("Unknown action: " + action.getName());
+            this.actionKinds[i] = kind;
+
+            final int[] instantiations = action.getInstantiations();
+            for (int p = 0; p < PARAMETER_TYPES[kind].length; p++) {
+                final int object = instantiations[p];
+                if (this.typeOfObject[object] < 0) {
+                    this.typeOfObject[object] = PARAMETER_TYPES[kind][p];
+                    count[PARAMETER_TYPES[kind][p]]++;
+                }
+            }
+        }
+
+        this.objectsOfType = new int[TYPE_NAMES.length][];
+        indexObjects(count);
+    }
+
+    /**
+     * Creates the model of a problem from the kind of every action and the type of every object, as returned by
+     * <code>getActionKinds</code> and <code>getTypeOfObjects</code>
+     *
+     * @throws IllegalArgumentException if a kind or a type is not one of the domain
+     * */
+    public DomainModel(int[] actionKinds, int[] typeOfObject) {
+        for (int kind : actionKinds)
+            if (kind < MOVE_AGENT || kind >= NB_KINDS)
+                throw new IllegalArgumentException("Unknown kind of action: " + kind);
+        final int[] count = new int[TYPE_NAMES.length];
+        for (int type : typeOfObject) {
+            if (type < -1 || type >= TYPE_NAMES.length)
+                throw new IllegalArgumentException("Unknown type: " + type);
+            if (type >= 0)
+                count[type]++;
+        }
+
+        this.actionKinds = actionKinds;
+        this.typeOfObject = typeOfObject;
+        this.indexOfObject = new int[typeOfObject.length];
+        Arrays.fill(this.indexOfObject, -1);
+        this.objectsOfType = new int[TYPE_NAMES.length][];
+        indexObjects(count);
+    }
+
+    /**
+     * Returns the model of <code>problem</code>: the one stored with it if it has been read from the grounding cache,
+     * or else a new one
+     * */
+    public static DomainModel of(Problem problem) {
+        if (problem instanceof CachedProblem)
+            return ((CachedProblem) problem).getModel();
+        return new DomainModel(problem);
+    }
+
+    /**
+     * Lists the objects of every type, <code>count</code> giving how many they are, and gives every object its
+     * position among them
+     * */
+    private void indexObjects(int[] count) {
+        // The objects of every type are listed by increasing identifier, the order of the declaration in the problem
+        for (int t = 0; t < TYPE_NAMES.length; t++)
+            this.objectsOfType[t] = new int[count[t]];
+        Arrays.fill(count, 0);
+        for (int object = 0; object < this.typeOfObject.length; object++) {
+            final int type = this.typeOfObject[object];
+            if (type >= 0) {
+                this.indexOfObject[object] = count[type];
+                this.objectsOfType[type][count[type]++] = object;
+            }
+        }
+    }
+
+    /**
+     * Returns the kind of every action, indexed by the index of the action in the problem. The array must not be
+     * modified.
+     * */
+    public int[] getActionKinds() {
+        return this.actionKinds;
+    }
+
+    /**
+     * Returns the type of every object, indexed by identifier, or -1 for the objects that no action involves. The
+     * array must not be modified.
+     * */
+    public int[] getTypeOfObjects() {
+        return this.typeOfObject;
+    }
+
+    /**
+     * Returns the kind of the action named <code>name</code>, or -1 if the domain has no such action
+     * */
+    private static int kindOf(String name) {
+        for (int kind = 1; kind < KIND_NAMES.length; kind++)
+            if (KIND_NAMES[kind].equalsIgnoreCase(name))
+                return kind;
+        return -1;
+    }
+
+    /**
+     * Returns the kind of the action of index <code>actionIndex</code> in the problem
+     * */
+    public int getKind(int actionIndex) {
+        return this.actionKinds[actionIndex];
+    }
+
+    /**
+     * Returns true if the actions of kind <code>kind</code> move an agent
+     * */
+    public static boolean isMove(int kind) {
+        return kind == MOVE_AGENT || kind == MOVE_AGENT_AND_CARRIER;
+    }
+
+    /**
+     * Returns the position of the agent among the parameters of the actions of kind <code>kind</code>
+     * */
+    public static int agentOffset(int kind) {
+        return AGENT_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the carrier among the parameters of the actions of kind <code>kind</code>, or -1
+     * */
+    public static int carrierOffset(int kind) {
+        return CARRIER_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the box among the parameters of the actions of kind <code>kind</code>, or -1
+     * */
+    public static int boxOffset(int kind) {
+        return BOX_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the content among the parameters of the actions of kind <code>kind</code>, or -1
+     * */
+    public static int contentOffset(int kind) {
+        return CONTENT_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the person among the parameters of the actions of kind <code>kind</code>, or -1
+     * */
+    public static int personOffset(int kind) {
+        return PERSON_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the location left among the parameters of the actions of kind <code>kind</code>, or -1
+     * if they're not moves
+     * */
+    public static int originOffset(int kind) {
+        return ORIGIN_OFFSET[kind];
+    }
+
+    /**
+     * Returns the position of the location reached among the parameters of the actions of kind <code>kind</code>, or
+     * -1 if they're not moves
+     * */
+    public static int destinationOffset(int kind) {
+        return DESTINATION_OFFSET[kind];
+    }
+
+    /**
+     * Returns the objects of type <code>type</code>, in increasing order of identifier. The array must not be
+     * modified.
+     * */
+    public int[] getObjects(int type) {
+        return this.objectsOfType[type];
+    }
+
+    public int[] getAgents() {
+        return this.objectsOfType[AGENT];
+    }
+
+    public int[] getCarriers() {
+        return this.objectsOfType[CARRIER];
+    }
+
+    public int[] getBoxes() {
+        return this.objectsOfType[BOX];
+    }
+
+    public int[] getBoxPlaces() {
+        return this.objectsOfType[BOX_PLACE];
+    }
+
+    public int[] getLocations() {
+        return this.objectsOfType[LOCATION];
+    }
+
+    public int[] getContents() {
+        return this.objectsOfType[CONTENT];
+    }
+
+    public int[] getPeople() {
+        return this.objectsOfType[PERSON];
+    }
+
+    /**
+     * Returns the type of the object <code>object</code>, or -1 if no action involves it
+     * */
+    public int getType(int object) {
+        return object >= 0 && object < this.typeOfObject.length ? this.typeOfObject[object] : -1;
+    }
+
+    /**
+     * Returns the position of the object <code>object</code> in the array of the objects of its type, or -1 if no
+     * action involves it
+     * */
+    public int getIndex(int object) {
+        return this.indexOfObject[object];
+    }
+
+    /**
+     * Returns the name of the type <code>type</code>, as declared in the domain
+     * */
+    public static String getTypeName(int type) {
+        return TYPE_NAMES[type];
+    }
+}
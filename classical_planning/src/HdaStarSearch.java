@@ -0,0 +1,468 @@
+import fr.uga.pddl4j.problem.Problem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hash-distributed A* (HDA*): the search of <code>MyAlgorithm.My_ASTAR</code> spread over several threads. Every
+ * state belongs to one worker, chosen by its Zobrist fingerprint, and every worker has its own frontier and its own
+ * set of explored states, so the duplicates of a state always meet in the same worker and no lock is needed on them.
+ * The successors generated by a worker are sent to their owner through its inbox, a lock-free queue that any worker
+ * can write and only the owner reads; the owner discards them if they have already been explored, and otherwise
+ * computes their heuristic and puts them in its frontier.
+ *
+ * The pruning of the sequential search is kept: the best value of the heuristic found by any worker is shared, and
+ * every worker removes from its frontier the nodes with a greater value as soon as it sees it decrease. The first
+ * node with heuristic 0 taken from a frontier is the solution, and stops all the workers. Since the workers explore
+ * the nodes in a different order than the sequential search, the best value may come from a branch leading nowhere,
+ * after all the other nodes have been pruned: so the pruned nodes are kept aside by every worker, and if the search
+ * runs out of nodes the best value is raised to the smallest value among them, and the pruned nodes with that value
+ * are put back in the frontiers. A new restoration starts only after all the workers have done the last one. This is
+ * a deliberate difference from the sequential search, which drops the pruned nodes: to bound the memory they take,
+ * every worker keeps at most <code>PRUNED_LIMIT</code> of them, the ones with the smallest heuristic, and drops the
+ * others, which can't be restored any more.
+ *
+ * The search ends without a solution when no node is left anywhere: a shared counter holds the number of nodes that
+ * are in an inbox, in a frontier or being expanded, and another one the number of pruned nodes kept aside. A node is
+ * counted when it's sent, before it's put in the inbox, and discounted only after all its successors have been sent;
+ * the pruned nodes are counted again as pending before being discounted as kept aside. So the two counters can't be
+ * both 0 while some work is left.
+ * */
+public class HdaStarSearch {
+
+    /**
+     * Nanoseconds a worker waits for new nodes when its inbox and its frontier are empty
+     * */
+    private static final long IDLE_WAIT = 50_000;
+
+    /**
+     * The number of pruned nodes every worker keeps aside at most: beyond it, the ones with the greatest heuristic are
+     * dropped for good, as the sequential search drops all of them
+     * */
+    private static final int PRUNED_LIMIT = 65_536;
+
+    private final Problem problem;
+
+    private final SuccessorGenerator successorGenerator;
+
+    private final CompiledEffects compiledEffects;
+
+    private final MyHeuristic heuristic;
+
+    /**
+     * The keys of the fingerprints of the states, only read by the workers
+     * */
+    private final Zobrist zobrist;
+
+    /**
+     * The symmetries whose canonical forms give the fingerprints of the states, or null
+     * */
+    private Symmetry symmetry;
+
+    /**
+     * True if the frontiers of the workers break the ties by the most recent insertion
+     * */
+    private boolean lifoTies;
+
+    private final int nbWorkers;
+
+    private final List<ConcurrentLinkedQueue<Node>> inboxes;
+
+    /**
+     * The number of nodes in the inboxes, in the frontiers or being expanded
+     * */
+    private final AtomicLong pendingNodes;
+
+    /**
+     * The number of pruned nodes kept aside and the smallest heuristic among them (as the bits of the double)
+     * */
+    private final AtomicLong prunedNodes;
+
+    private final AtomicLong minPrunedHeuristic;
+
+    /**
+     * The number of times the workers have been asked to put back the pruned nodes, the heuristic up to which they
+     * have to put them back the last time, and the number of workers that have done it
+     * */
+    private final AtomicLong restorations;
+
+    private final AtomicLong restorationThreshold;
+
+    private final AtomicInteger restoredWorkers;
+
+    /**
+     * The best value of the heuristic found until now, as the bits of a non-negative double, which are ordered like
+     * the doubles themselves
+     * */
+    private final AtomicLong bestHeuristic;
+
+    private final AtomicReference<Node> solution;
+
+    private volatile boolean stopped;
+
+    private final long deadline;
+
+    private final Worker[] workers;
+
+    /**
+     * The meter to which every worker reports the bytes it has allocated
+     * */
+    private final MemoryMeter memoryMeter;
+
+    /**
+     * @param problem the problem to solve
+     * @param successorGenerator the actions applicable to the states of the problem
+     * @param compiledEffects the effects of the actions of the problem
+     * @param heuristic the heuristic, whose copies are used by the workers
+     * @param nbWorkers the number of workers
+     * @param timeout the maximum time of the search, in milliseconds
+     * @param memoryMeter the meter of the memory used by the search
+     * */
+    public HdaStarSearch(Problem problem, SuccessorGenerator successorGenerator, CompiledEffects compiledEffects,
+                         MyHeuristic heuristic, int nbWorkers, long timeout, MemoryMeter memoryMeter) {
+        this.problem = problem;
+        this.successorGenerator = successorGenerator;
+        this.compiledEffects = compiledEffects;
+        this.heuristic = heuristic;
+        this.zobrist = new Zobrist(problem.getFluents().size());
+        this.nbWorkers = nbWorkers;
+        this.inboxes = new ArrayList<>(nbWorkers);
+        for (int i = 0; i < nbWorkers; i++)
+            this.inboxes.add(new ConcurrentLinkedQueue<>());
+        this.pendingNodes = new AtomicLong();
+        this.prunedNodes = new AtomicLong();
+        this.minPrunedHeuristic = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+        this.restorations = new AtomicLong();
+        this.restorationThreshold = new AtomicLong();
+        this.restoredWorkers = new AtomicInteger(nbWorkers);
+        this.bestHeuristic = new AtomicLong();
+        this.solution = new AtomicReference<>();
+        this.deadline = System.nanoTime() + timeout * 1_000_000L;
+        this.workers = new Worker[nbWorkers];
+        this.memoryMeter = memoryMeter;
+    }
+
+    /**
+     * Makes the fingerprints of the states the ones of their canonical form under <code>symmetry</code>, or the plain
+     * ones if it's null. It must be called before <code>search</code>.
+     * */
+    public void setSymmetry(Symmetry symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Chooses whether the frontiers of the workers break the ties by the most recent insertion (see
+     * <code>Frontier</code>). It must be called before <code>search</code>.
+     * */
+    public void setLifoTies(boolean lifoTies) {
+        this.lifoTies = lifoTies;
+    }
+
+    /**
+     * Searches a solution from <code>root</code>, whose heuristic must have been computed, and returns the solution
+     * node, or null if there is no solution or the time is over
+     * */
+    public Node search(Node root) throws InterruptedException {
+        this.bestHeuristic.set(Double.doubleToLongBits(root.getHeuristic()));
+        root.computeFingerprint(this.zobrist, this.symmetry);
+        this.pendingNodes.set(1);
+        this.inboxes.get(owner(root)).add(root);
+
+        Thread[] threads = new Thread[this.nbWorkers];
+        for (int i = 0; i < this.nbWorkers; i++) {
+            this.workers[i] = new Worker(i);
+            threads[i] = new Thread(this.workers[i], "hda-worker-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        return this.solution.get();
+    }
+
+    /**
+     * Returns the number of nodes explored by all the workers
+     * */
+    public int getExploredNodes() {
+        int explored = 0;
+        for (Worker worker : this.workers)
+            if (worker != null)
+                explored += worker.alreadyExploredNodes.size();
+        return explored;
+    }
+
+    /**
+     * Returns the number of nodes left in the frontiers of all the workers
+     * */
+    public int getFrontierNodes() {
+        int nodes = 0;
+        for (Worker worker : this.workers)
+            if (worker != null)
+                nodes += worker.frontier.size();
+        return nodes;
+    }
+
+    /**
+     * Returns the memory taken by the sets of the explored states of all the workers
+     * */
+    public long getClosedSetsMemory() {
+        long bytes = 0;
+        for (Worker worker : this.workers)
+            if (worker != null)
+                bytes += worker.alreadyExploredNodes.getMemoryUsed();
+        return bytes;
+    }
+
+    /**
+     * Returns the number of times the heuristic has been computed by all the workers
+     * */
+    public long getHeuristicEvaluations() {
+        long evaluations = 0;
+        for (Worker worker : this.workers)
+            if (worker != null)
+                evaluations += worker.heuristic.getNumberOfEvaluations();
+        return evaluations;
+    }
+
+    /**
+     * Adds the statistics of the pruning rules of the heuristics of the workers to <code>statistics</code>
+     * */
+    public void addPruningStatistics(PruningEngine statistics) {
+        for (Worker worker : this.workers)
+            if (worker != null)
+                statistics.add(worker.heuristic.getPruningEngine());
+    }
+
+    /**
+     * Returns the worker owning the state of <code>node</code>, from the high bits of its fingerprint: the low ones
+     * choose the slot of the state in the set of the explored states of the owner.
+     * */
+    private int owner(Node node) {
+        return (int) ((node.getFingerprint() >>> 32) % this.nbWorkers);
+    }
+
+    private double getBestHeuristic() {
+        return Double.longBitsToDouble(this.bestHeuristic.get());
+    }
+
+    private class Worker implements Runnable {
+
+        private final int id;
+
+        private final MyHeuristic heuristic;
+
+        private final Frontier frontier;
+
+        private final ClosedSet alreadyExploredNodes;
+
+        /**
+         * The best value of the heuristic this worker has pruned its frontier with. As in the sequential search, the
+         * frontier is pruned only when a value better than the one of the root is found.
+         * */
+        private double localBest;
+
+        /**
+         * The nodes pruned from the frontier, at most <code>PRUNED_LIMIT</code>, and the number of restorations this
+         * worker has seen
+         * */
+        private final List<Node> pruned;
+
+        private long restored;
+
+        Worker(int id) {
+            this.id = id;
+            this.heuristic = new MyHeuristic(HdaStarSearch.this.heuristic);
+            this.frontier = new Frontier(HdaStarSearch.this.lifoTies);
+            this.alreadyExploredNodes = new ClosedSet();
+            this.localBest = getBestHeuristic();
+            this.pruned = new ArrayList<>();
+            this.restored = 0;
+        }
+
+        @Override
+        public void run() {
+            final long allocatedAtStart = memoryMeter.currentThreadAllocatedBytes();
+            try {
+                work();
+            }
+            finally {
+                memoryMeter.addOtherThreadAllocatedBytes(memoryMeter.currentThreadAllocatedBytes()
+                        - allocatedAtStart);
+            }
+        }
+
+        private void work() {
+            while (!stopped) {
+                if (System.nanoTime() - deadline > 0) {
+                    stopped = true;
+                    break;
+                }
+
+                receive();
+                prune();
+                if (restorations.get() != this.restored)
+                    restore();
+
+                Node current = this.frontier.poll();
+                if (current == null) {
+                    // Nothing to do here: the search is over if nothing is left anywhere else. If only pruned nodes
+                    // are left, all the workers are asked to put back the best ones. The pending nodes are read again
+                    // after the pruned ones, since a restoration in between moves nodes from the second counter to
+                    // the first
+                    if (pendingNodes.get() == 0) {
+                        if (prunedNodes.get() == 0 && pendingNodes.get() == 0) {
+                            stopped = true;
+                            break;
+                        }
+                        if (restoredWorkers.get() == nbWorkers && restoredWorkers.compareAndSet(nbWorkers, 0)) {
+                            final long threshold = minPrunedHeuristic.getAndSet(
+                                    Double.doubleToLongBits(Double.MAX_VALUE));
+                            restorationThreshold.set(threshold);
+                            bestHeuristic.set(threshold);
+                            restorations.incrementAndGet();
+                        }
+                    }
+                    LockSupport.parkNanos(IDLE_WAIT);
+                    continue;
+                }
+
+                // A duplicate of a state explored, with a cost not greater than its own, after the duplicate was put
+                // in the frontier. A cheaper duplicate reopens the state
+                if (!this.alreadyExploredNodes.add(current.getFingerprint(), (int) current.getCost())) {
+                    pendingNodes.decrementAndGet();
+                    continue;
+                }
+
+                final double currentHeuristic = current.getHeuristic();
+                if (currentHeuristic == 0.0) {
+                    solution.compareAndSet(null, current);
+                    stopped = true;
+                    break;
+                }
+
+                // A new best value of the heuristic is shared with the other workers
+                final long bits = Double.doubleToLongBits(currentHeuristic);
+                if (bits < bestHeuristic.get())
+                    bestHeuristic.accumulateAndGet(bits, Math::min);
+
+                for (int actionIndex : successorGenerator.getApplicableActions(current)) {
+                    Node next = new Node(compiledEffects.apply(current, actionIndex), current,
+                            current.getCost() + 1, problem.getActions().get(actionIndex),
+                            heuristic.getModel().getKind(actionIndex), current.getDepth() + 1);
+                    next.computeFingerprint(zobrist, symmetry);
+                    pendingNodes.incrementAndGet();
+                    final int owner = owner(next);
+                    if (owner == this.id)
+                        insert(next);
+                    else
+                        inboxes.get(owner).add(next);
+                }
+
+                // The node is discounted after its successors have been counted
+                pendingNodes.decrementAndGet();
+            }
+        }
+
+        /**
+         * Inserts in the frontier the nodes sent by the other workers
+         * */
+        private void receive() {
+            Node node;
+            while ((node = inboxes.get(this.id).poll()) != null)
+                insert(node);
+        }
+
+        /**
+         * Computes the heuristic of a node owned by this worker, unless it has already been explored, and inserts it
+         * in the frontier if it's acceptable. The root arrives with its heuristic already computed, and it's always
+         * inserted, as in the sequential search.
+         * */
+        private void insert(Node node) {
+            if (this.alreadyExploredNodes.contains(node.getFingerprint(), (int) node.getCost())) {
+                pendingNodes.decrementAndGet();
+                return;
+            }
+            if (Double.isNaN(node.getHeuristic()))
+                node.setHeuristic(this.heuristic.estimate(node));
+            if (node.getHeuristic() < Double.MAX_VALUE || node.getParent() == null)
+                this.frontier.offer(node);
+            else
+                pendingNodes.decrementAndGet();
+        }
+
+        /**
+         * Removes from the frontier the nodes with a heuristic greater than the best one, if it has decreased since
+         * the last time
+         * */
+        private void prune() {
+            final double best = getBestHeuristic();
+            if (best >= this.localBest)
+                return;
+            this.localBest = best;
+            final int before = this.frontier.size();
+            final int first = this.pruned.size();
+            this.frontier.retainHeuristicAtMost(best, this.pruned::add);
+            prunedNodes.addAndGet(before - this.frontier.size());
+            pendingNodes.addAndGet(this.frontier.size() - before);
+            publishMinPruned(first);
+            dropWorstPruned();
+        }
+
+        /**
+         * Drops the pruned nodes with the greatest heuristic beyond <code>PRUNED_LIMIT</code>. The smallest heuristic
+         * among the pruned nodes doesn't change, since the nodes kept are the ones with the smallest heuristic.
+         * */
+        private void dropWorstPruned() {
+            final int dropped = this.pruned.size() - PRUNED_LIMIT;
+            if (dropped <= 0)
+                return;
+            this.pruned.sort(Comparator.comparingDouble(Node::getHeuristic));
+            this.pruned.subList(PRUNED_LIMIT, this.pruned.size()).clear();
+            prunedNodes.addAndGet(-dropped);
+        }
+
+        /**
+         * Puts back in the frontier the pruned nodes with a heuristic not greater than the threshold of the last
+         * restoration, counting them as pending before discounting them as pruned
+         * */
+        private void restore() {
+            this.restored = restorations.get();
+            final double threshold = Double.longBitsToDouble(restorationThreshold.get());
+            this.localBest = threshold;
+
+            int restoredNodes = 0;
+            for (Node node : this.pruned)
+                if (node.getHeuristic() <= threshold)
+                    restoredNodes++;
+            pendingNodes.addAndGet(restoredNodes);
+            prunedNodes.addAndGet(-restoredNodes);
+
+            int kept = 0;
+            for (Node node : this.pruned) {
+                if (node.getHeuristic() <= threshold)
+                    this.frontier.offer(node);
+                else
+                    this.pruned.set(kept++, node);
+            }
+            this.pruned.subList(kept, this.pruned.size()).clear();
+            publishMinPruned(0);
+            restoredWorkers.incrementAndGet();
+        }
+
+        /**
+         * Lowers the smallest heuristic among the pruned nodes with the ones from position <code>first</code> on
+         * */
+        private void publishMinPruned(int first) {
+            double min = Double.MAX_VALUE;
+            for (int i = first; i < this.pruned.size(); i++)
+                min = Double.min(min, this.pruned.get(i).getHeuristic());
+            if (min < Double.MAX_VALUE)
+                minPrunedHeuristic.accumulateAndGet(Double.doubleToLongBits(min), Math::min);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.Parser;
+import fr.uga.pddl4j.problem.DefaultProblem;
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark comparing the ways of expanding the relaxed planning graph of <code>MyHeuristic</code>: one fluent at a
+ * time with counters (the default), from the graph of the parent, and on bitsets with the scalar and the vector
+ * kernels. The nodes are the successors of the nodes met along random walks from the initial state, so they look like
+ * the ones evaluated by a search. Every way is checked to give the same SUM values as the default one, and then timed
+ * over several rounds, after some rounds of warm-up.
+ *
+ * Usage: <code>java HeuristicBenchmark domain problem [walkSteps] [rounds] [seed]</code>; see <code>bench.sh</code>.
+ * */
+public class HeuristicBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    public static void main(String[] args) throws FileNotFoundException {
+        if (args.length < 2) {
+            System.out.println("Usage: HeuristicBenchmark domain problem [walkSteps] [rounds] [seed]");
+            return;
+        }
+        final int walkSteps = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        final long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+
+        DefaultParsedProblem parsedProblem = new Parser().parse(args[0], args[1]);
+        if (parsedProblem == null)
+            return;
+        Problem problem = new DefaultProblem(parsedProblem);
+        problem.instantiate();
+
+        List<Node> nodes = sampleNodes(problem, walkSteps, new Random(seed));
+        System.out.printf("%d fluents, %d actions, %d nodes%n", problem.getFluents().size(),
+                problem.getActions().size(), nodes.size());
+
+        String[] names = {"counters", "incremental", "bitset scalar", "bitset vector"};
+        MyHeuristic[] heuristics = new MyHeuristic[names.length];
+        for (int i = 0; i < names.length; i++)
+            heuristics[i] = new MyHeuristic(problem);
+        heuristics[1].setIncremental(true);
+        heuristics[2].setBitsetKernel(BitsetKernel.create("scalar"));
+        BitsetKernel vector = BitsetKernel.create("vector");
+        heuristics[3].setBitsetKernel(vector);
+        names[3] = "bitset " + vector;
+
+        // Every way must give the values of the default one
+        int[] expected = evaluateAll(heuristics[0], nodes);
+        for (int i = 1; i < names.length; i++) {
+            int[] values = evaluateAll(heuristics[i], nodes);
+            if (!Arrays.equals(expected, values)) {
+                System.out.println("Different values with " + names[i]);
+                return;
+            }
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            for (int r = 0; r < WARMUP_ROUNDS; r++)
+                evaluateAll(heuristics[i], nodes);
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int r = 0; r < rounds; r++) {
+                final long start = System.nanoTime();
+                evaluateAll(heuristics[i], nodes);
+                final long time = System.nanoTime() - start;
+                best = Long.min(best, time);
+                total += time;
+            }
+            System.out.printf("%-24s %10.1f ns/node (best round %.1f)%n", names[i],
+                    (double) total / rounds / nodes.size(), (double) best / nodes.size());
+        }
+    }
+
+    /**
+     * Walks randomly from the initial state for <code>walkSteps</code> steps, restarting now and then, and returns
+     * all the successors of the nodes met, grouped by parent as a search generates them
+     * */
+    static List<Node> sampleNodes(Problem problem, int walkSteps, Random random) {
+        MyHeuristic heuristic = new MyHeuristic(problem);
+        SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+        CompiledEffects compiledEffects = new CompiledEffects(problem);
+
+        DomainModel model = heuristic.getModel();
+        final Node root = new Node(new State(problem.getInitialState()), model.getAgents(), model.getCarriers(),
+                model.getBoxes());
+        List<Node> nodes = new ArrayList<>();
+        Node current = root;
+        for (int step = 0; step < walkSteps; step++) {
+            int[] applicable = successorGenerator.getApplicableActions(current);
+            if (applicable.length == 0 || random.nextInt(50) == 0) {
+                current = root;
+                continue;
+            }
+            Node chosen = null;
+            final int choice = random.nextInt(applicable.length);
+            for (int k = 0; k < applicable.length; k++) {
+                Node next = new Node(compiledEffects.apply(current, applicable[k]), current, current.getCost() + 1,
+                        problem.getActions().get(applicable[k]), model.getKind(applicable[k]),
+                        current.getDepth() + 1);
+                nodes.add(next);
+                if (k == choice)
+                    chosen = next;
+            }
+            current = chosen;
+        }
+        return nodes;
+    }
+
+    private static int[] evaluateAll(MyHeuristic heuristic, List<Node> nodes) {
+        int[] values = new int[nodes.size()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = heuristic.computeSumValue(nodes.get(i));
+        return values;
+    }
+}
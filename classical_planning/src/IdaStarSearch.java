@@ -0,0 +1,285 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.operator.Action;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Iterative deepening A*: a sequence of depth-first searches from the root, each one visiting only the nodes whose
+ * cost plus <code>weight</code> times the heuristic is not greater than a bound, which starts from the value of the
+ * root and becomes, after every search, the smallest value above it met in that search. The successors of a node are
+ * visited by increasing heuristic, and the first successor with heuristic 0 is the solution.
+ *
+ * The heuristic is the SUM of the planner, which is not admissible, so the plan is not guaranteed to be the shortest
+ * one even with weight 1; and since SUM often drops by more than 1 along an action, with weight 1 the bound of the
+ * first searches leaves inside most of the subtrees that lead nowhere, which are visited exhaustively. With weight 2
+ * the first search usually goes straight to a plan, a few steps longer.
+ *
+ * The memory used grows with the depth of the search and not with the number of nodes generated: there is a single
+ * node per depth, reused by all the nodes of that depth, whose state is overwritten in place with the one of the
+ * successor visited (see <code>Node.reuse</code> and <code>CompiledEffects.apply(State, int, State)</code>). The
+ * successors of a node are first all written in the node of the next depth to compute their heuristic, and then
+ * written again, in order, to be visited. Nothing is undone when the search goes up: the nodes of the path above
+ * are never modified by the visit of their descendants.
+ *
+ * A transposition table of fixed size, direct-mapped on the fingerprints of the states, avoids visiting again in the
+ * same search a state already reached with a cost not greater: the entries of the previous searches, made with a
+ * smaller bound, are ignored. On a collision the last state reached replaces the previous one, so the table only
+ * cuts part of the duplicates, but it never grows.
+ * */
+public class IdaStarSearch {
+
+    private final Problem problem;
+
+    private final SuccessorGenerator successorGenerator;
+
+    private final CompiledEffects compiledEffects;
+
+    private final MyHeuristic heuristic;
+
+    private final Zobrist zobrist;
+
+    private final int weight;
+
+    /**
+     * The symmetries whose canonical forms give the fingerprints of the states, or null
+     * */
+    private Symmetry symmetry;
+
+    private final TranspositionTable table;
+
+    /**
+     * The deadline of the search, on the clock of <code>System.nanoTime</code>
+     * */
+    private final long deadline;
+
+    private boolean timedOut;
+
+    /**
+     * The node of every depth, the root first: the ones up to the depth being visited are the current path
+     * */
+    private final List<Node> frames = new ArrayList<>();
+
+    /**
+     * The bound of the current search, and the smallest value above it met until now
+     * */
+    private int bound;
+
+    private int nextBound;
+
+    private int iterations;
+
+    private long expandedNodes;
+
+    /**
+     * @param problem the problem to solve
+     * @param successorGenerator the actions applicable to the states of the problem
+     * @param compiledEffects the effects of the actions of the problem
+     * @param heuristic the heuristic, which must not be incremental since the parent of a node is reused
+     * @param weight the weight of the heuristic in the value compared to the bound
+     * @param tableSize the number of entries of the transposition table, rounded up to a power of 2
+     * @param timeout the maximum time of the search, in milliseconds
+     * */
+    public IdaStarSearch(Problem problem, SuccessorGenerator successorGenerator, CompiledEffects compiledEffects,
+                         MyHeuristic heuristic, int weight, int tableSize, long timeout) {
+        if (weight < 1)
+            throw new IllegalArgumentException("The weight of the heuristic must be at least 1");
+        if (tableSize < 1)
+            throw new IllegalArgumentException("The transposition table must have at least an entry");
+        this.weight = weight;
+        this.problem = problem;
+        this.successorGenerator = successorGenerator;
+        this.compiledEffects = compiledEffects;
+        this.heuristic = heuristic;
+        this.zobrist = new Zobrist(problem.getFluents().size());
+        this.table = new TranspositionTable(tableSize);
+        this.deadline = System.nanoTime() + timeout * 1_000_000L;
+    }
+
+    /**
+     * Makes the fingerprints of the states the ones of their canonical form under <code>symmetry</code>, or the plain
+     * ones if it's null. It must be called before <code>search</code>.
+     * */
+    public void setSymmetry(Symmetry symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Searches a solution from <code>root</code>, whose heuristic must have been computed, and returns the solution
+     * node, or null if there is none or the time is over. The nodes of the path of the solution are the ones of the
+     * search, so they're valid only until the next call.
+     * */
+    public Node search(Node root) {
+        if (root.getHeuristic() == 0.0)
+            return root;
+        if (root.getHeuristic() == Double.MAX_VALUE)
+            return null;
+
+        root.computeFingerprint(this.zobrist, this.symmetry);
+        this.frames.clear();
+        this.frames.add(root);
+        this.bound = this.weight * (int) root.getHeuristic();
+
+        while (true) {
+            this.iterations++;
+            this.nextBound = Integer.MAX_VALUE;
+            this.table.visit(root.getFingerprint(), 0, this.iterations);
+            Node solution = visit(root);
+
+            // Without a value above the bound, no node has been left out of the search and there is no solution
+            if (solution != null || this.timedOut || this.nextBound == Integer.MAX_VALUE)
+                return solution;
+            this.bound = this.nextBound;
+        }
+    }
+
+    /**
+     * Visits the subtree of <code>node</code> within the bound and returns the solution found in it, or null
+     * */
+    private Node visit(Node node) {
+        if (System.nanoTime() - this.deadline > 0) {
+            this.timedOut = true;
+            return null;
+        }
+        this.expandedNodes++;
+
+        // Evaluate all the successors, keeping the ones within the bound with their heuristic in the upper 32 bits
+        // and their position among the applicable actions in the lower ones, so that sorting them sorts by heuristic
+        final int[] actions = this.successorGenerator.getApplicableActions(node);
+        final long[] kept = new long[actions.length];
+        int nbKept = 0;
+        final int cost = (int) node.getCost() + 1;
+        for (int k = 0; k < actions.length; k++) {
+            final Node next = place(node, actions[k]);
+            if (!this.table.visit(next.getFingerprint(), cost, this.iterations))
+                continue;
+
+            final double h = this.heuristic.estimate(next);
+            if (h == Double.MAX_VALUE)
+                continue;
+            if (h == 0.0) {
+                next.setHeuristic(h);
+                return next;
+            }
+            final int f = cost + this.weight * (int) h;
+            if (f > this.bound) {
+                this.nextBound = Integer.min(this.nextBound, f);
+                continue;
+            }
+            kept[nbKept++] = ((long) h << 32) | k;
+        }
+
+        // Visit them, the best first
+        Arrays.sort(kept, 0, nbKept);
+        for (int i = 0; i < nbKept; i++) {
+            final Node next = place(node, actions[(int) kept[i]]);
+            next.setHeuristic(kept[i] >>> 32);
+            Node solution = visit(next);
+            if (solution != null || this.timedOut)
+                return solution;
+        }
+        return null;
+    }
+
+    /**
+     * Writes in the node of the next depth the successor of <code>parent</code> by the action with index
+     * <code>actionIndex</code>, and returns it with its fingerprint computed
+     * */
+    private Node place(Node parent, int actionIndex) {
+        final int depth = parent.getDepth() + 1;
+        final Action action = this.problem.getActions().get(actionIndex);
+        final int kind = this.heuristic.getModel().getKind(actionIndex);
+        Node node;
+        if (depth < this.frames.size()) {
+            node = this.frames.get(depth);
+            node.reuse(parent, parent.getCost() + 1, action, kind, depth);
+            this.compiledEffects.apply(parent, actionIndex, node);
+        }
+        else {
+            node = new Node(this.compiledEffects.apply(parent, actionIndex), parent, parent.getCost() + 1, action,
+                    kind, depth);
+            this.frames.add(node);
+        }
+        node.computeFingerprint(this.zobrist, this.symmetry);
+        return node;
+    }
+
+    /**
+     * Returns the memory taken by the transposition table
+     * */
+    public long getTableMemory() {
+        return this.table.getMemoryUsed();
+    }
+
+    /**
+     * Returns the number of nodes expanded, over all the searches
+     * */
+    public long getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Returns the number of depth-first searches done
+     * */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Returns the bound of the last depth-first search
+     * */
+    public int getBound() {
+        return this.bound;
+    }
+
+    /**
+     * Returns the greatest depth reached, i.e. the number of nodes allocated minus one
+     * */
+    public int getMaxDepth() {
+        return this.frames.size() - 1;
+    }
+
+    /**
+     * The transposition table: for every entry, the fingerprint of a state, the smallest cost with which it has been
+     * reached and the search in which it has been reached, in three parallel arrays
+     * */
+    private static class TranspositionTable {
+
+        private final long[] fingerprints;
+
+        private final int[] costs;
+
+        private final int[] iterations;
+
+        private final int mask;
+
+        TranspositionTable(int size) {
+            final int slots = Integer.highestOneBit(Integer.max(size, 2) - 1) << 1;
+            this.fingerprints = new long[slots];
+            this.costs = new int[slots];
+            this.iterations = new int[slots];
+            this.mask = slots - 1;
+        }
+
+        /**
+         * Records that the state with the given fingerprint has been reached with cost <code>cost</code> in the
+         * search <code>iteration</code>, and returns false if it had already been reached in that search with a cost
+         * not greater, i.e. if it must not be visited again
+         * */
+        boolean visit(long fingerprint, int cost, int iteration) {
+            final int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & this.mask;
+            if (this.iterations[slot] == iteration && this.fingerprints[slot] == fingerprint
+                    && this.costs[slot] <= cost)
+                return false;
+            this.fingerprints[slot] = fingerprint;
+            this.costs[slot] = cost;
+            this.iterations[slot] = iteration;
+            return true;
+        }
+
+        long getMemoryUsed() {
+            return (long) this.fingerprints.length * (Long.BYTES + 2 * Integer.BYTES);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.operator.Condition;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.Arrays;
+
+/**
+ * Class that computes the SUM value of the relaxed planning graph of a state starting from the graph of another
+ * state, called the anchor, instead of expanding it from scratch. The level at which a fluent is reached in the
+ * relaxed planning graph is the smallest number of layers of operators needed to make it true, i.e. the fixpoint of:
+ * <ul>
+ *     <li><code>level(p) = 0</code> if p holds in the state</li>
+ *     <li><code>level(p) = min(opLevel(o) + 1)</code> over the operators o having p among their effects</li>
+ *     <li><code>opLevel(o) = max(level(q))</code> over the preconditions q of o</li>
+ * </ul>
+ * A successor differs from its parent by a few fluents, and only the levels that depend on them change. They are
+ * repaired in two phases, as in the incremental algorithm of Ramalingam and Reps for this kind of equations:
+ * <ol>
+ *     <li>The fluents whose level can increase are found: the fluents that no longer hold in the state and, in order
+ *     of level, the fluents that were reached only through operators having one of them as a precondition. These
+ *     fluents, and those operators, are set to infinity.</li>
+ *     <li>Every fluent keeps, besides its level, the value <code>rhs</code> given by the equations above on the
+ *     current levels. Now levels can only decrease, so the fluents with <code>rhs</code> smaller than their level are
+ *     processed in order of <code>rhs</code>, as in Dijkstra's algorithm, until all the goals have their final level.
+ *     </li>
+ * </ol>
+ * The fluents to revisit are found through the precondition and effect edges of the relaxed graph, so the work
+ * depends on the size of the change rather than on the whole set of fluents. In this domain the change is not small,
+ * though: moving an agent changes the level of its location, on which almost all the operators of the agent depend, so
+ * phase 1 invalidates most of the graph and phase 2 rebuilds it, besides logging the changes. The values are the same
+ * as from scratch, but a search is slower with it (0.50/9.74/44.19 s instead of 0.19/5.22/16.93 s on problem1-3, with
+ * the same nodes and plans), and it's used only when asked for (see <code>MyHeuristic.setIncremental</code>).
+ *
+ * The anchor graph is computed once, to the fixpoint, and is never modified: the changes made to evaluate a
+ * successor are logged and rolled back afterwards, so all the successors of the same node share the same anchor.
+ * The positive fluents have the same index as in the problem; the negative fluents (a fluent being false) are shifted
+ * by the number of fluents, and only the ones that are a negative precondition or a negative goal are considered.
+ * */
+public class IncrementalRelaxedGraph {
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    private final int nbFluents;
+
+    /**
+     * For each fluent, the operators having it as a precondition. The operators without preconditions are not listed
+     * */
+    private final int[][] precondOperators;
+
+    /**
+     * For each fluent, the operators having it among their effects
+     * */
+    private final int[][] achievers;
+
+    /**
+     * For each operator, its preconditions and its effects
+     * */
+    private final int[][] operatorPreconds;
+
+    private final int[][] operatorEffects;
+
+    private final int[] goals;
+
+    private final boolean[] isRelevantNegative;
+
+    /**
+     * The relaxed planning graph: the level and the rhs of every fluent and the level of every operator
+     * */
+    private final int[] level;
+
+    private final int[] rhs;
+
+    private final int[] operatorLevel;
+
+    /**
+     * The queue of the inconsistent fluents, as a binary heap of <code>(key << 32) | fluent</code>. A fluent may be
+     * queued more than once: the entries whose key is no longer the current one are skipped.
+     * */
+    private long[] queue;
+
+    private int queueSize;
+
+    /**
+     * The state of the graph, used to know which fluents hold at level 0
+     * */
+    private State state;
+
+    /**
+     * The log of the changes made to the anchor graph: the array modified (0 for <code>level</code>, 1 for
+     * <code>rhs</code>, 2 for <code>operatorLevel</code>), the index and the previous value
+     * */
+    private int[] logArray;
+
+    private int[] logIndex;
+
+    private int[] logValue;
+
+    private int logSize;
+
+    private boolean logging;
+
+    /**
+     * The number of evaluations made, used to mark the fluents and the operators whose level can increase in the
+     * current evaluation without having to clear the marks afterwards
+     * */
+    private int evaluation;
+
+    private final int[] affectedFluent;
+
+    private final int[] affectedOperator;
+
+    /**
+     * The fluents and the operators whose level can increase in the current evaluation
+     * */
+    private int[] affectedFluents;
+
+    private int nbAffectedFluents;
+
+    private int[] affectedOperators;
+
+    private int nbAffectedOperators;
+
+    /**
+     * The fluents that differ between the anchor and the state being evaluated
+     * */
+    private final BitVector difference;
+
+    /**
+     * Creates the incremental graph from the edges of the relaxed planning graph of <code>MyHeuristic</code>.
+     *
+     * @param nbFluents the number of fluents of the problem
+     * @param pPrecondOperators for each fluent, the operators having it as positive precondition
+     * @param nPrecondOperators for each fluent, the operators having it as negative precondition
+     * @param pEffectFluents for each operator, the fluents it makes true
+     * @param nEffectFluents for each operator, the relevant fluents it makes false
+     * @param effectsEdges for each fluent, the operators making it true (positive) and false (negative)
+     * @param preconditions for each operator, its preconditions
+     * @param pGoals the positive goals
+     * @param nGoals the negative goals
+     * @param nRelevantFluents the fluents that are a negative precondition or a negative goal
+     * */
+    public IncrementalRelaxedGraph(int nbFluents, int[][] pPrecondOperators, int[][] nPrecondOperators,
+                                   int[][] pEffectFluents, int[][] nEffectFluents, Condition[] effectsEdges,
+                                   Condition[] preconditions, int[] pGoals, int[] nGoals, int[] nRelevantFluents) {
+        this.nbFluents = nbFluents;
+        final int nbOperators = pEffectFluents.length;
+
+        this.isRelevantNegative = new boolean[nbFluents];
+        for (int p : nRelevantFluents)
+            this.isRelevantNegative[p] = true;
+
+        this.precondOperators = new int[2 * nbFluents][];
+        this.achievers = new int[2 * nbFluents][];
+        for (int p = 0; p < nbFluents; p++) {
+            this.precondOperators[p] = pPrecondOperators[p];
+            this.precondOperators[nbFluents + p] = nPrecondOperators[p];
+            this.achievers[p] = toArray(effectsEdges[p].getPositiveFluents());
+            this.achievers[nbFluents + p] = this.isRelevantNegative[p]
+                    ? toArray(effectsEdges[p].getNegativeFluents()) : new int[0];
+        }
+
+        this.operatorPreconds = new int[nbOperators][];
+        this.operatorEffects = new int[nbOperators][];
+        for (int o = 0; o < nbOperators; o++) {
+            final BitVector pPre = preconditions[o].getPositiveFluents();
+            final BitVector nPre = preconditions[o].getNegativeFluents();
+            int[] pre = new int[pPre.cardinality() + nPre.cardinality()];
+            int k = 0;
+            for (int p = pPre.nextSetBit(0); p >= 0; p = pPre.nextSetBit(p + 1))
+                pre[k++] = p;
+            for (int p = nPre.nextSetBit(0); p >= 0; p = nPre.nextSetBit(p + 1))
+                pre[k++] = nbFluents + p;
+            this.operatorPreconds[o] = pre;
+
+            int[] eff = new int[pEffectFluents[o].length + nEffectFluents[o].length];
+            k = 0;
+            for (int p : pEffectFluents[o])
+                eff[k++] = p;
+            for (int p : nEffectFluents[o])
+                eff[k++] = nbFluents + p;
+            this.operatorEffects[o] = eff;
+        }
+
+        this.goals = new int[pGoals.length + nGoals.length];
+        int k = 0;
+        for (int g : pGoals)
+            this.goals[k++] = g;
+        for (int g : nGoals)
+            this.goals[k++] = nbFluents + g;
+
+        this.level = new int[2 * nbFluents];
+        this.rhs = new int[2 * nbFluents];
+        this.operatorLevel = new int[nbOperators];
+        this.affectedFluent = new int[2 * nbFluents];
+        this.affectedOperator = new int[nbOperators];
+        this.affectedFluents = new int[2 * nbFluents];
+        this.affectedOperators = new int[nbOperators];
+        this.evaluation = 0;
+        this.queue = new long[64];
+        this.logArray = new int[64];
+        this.logIndex = new int[64];
+        this.logValue = new int[64];
+        this.difference = new BitVector(nbFluents);
+    }
+
+    /**
+     * Creates an incremental graph with the same edges as <code>other</code>, which are shared, but with its own
+     * levels, queue and log, so that the two graphs can be used at the same time by different threads
+     * */
+    public IncrementalRelaxedGraph(IncrementalRelaxedGraph other) {
+        this.nbFluents = other.nbFluents;
+        this.isRelevantNegative = other.isRelevantNegative;
+        this.precondOperators = other.precondOperators;
+        this.achievers = other.achievers;
+        this.operatorPreconds = other.operatorPreconds;
+        this.operatorEffects = other.operatorEffects;
+        this.goals = other.goals;
+
+        final int nbOperators = other.operatorLevel.length;
+        this.level = new int[2 * this.nbFluents];
+        this.rhs = new int[2 * this.nbFluents];
+        this.operatorLevel = new int[nbOperators];
+        this.affectedFluent = new int[2 * this.nbFluents];
+        this.affectedOperator = new int[nbOperators];
+        this.affectedFluents = new int[2 * this.nbFluents];
+        this.affectedOperators = new int[nbOperators];
+        this.evaluation = 0;
+        this.queue = new long[64];
+        this.logArray = new int[64];
+        this.logIndex = new int[64];
+        this.logValue = new int[64];
+        this.difference = new BitVector(this.nbFluents);
+    }
+
+    /**
+     * Returns the indexes of the bits set in <code>bits</code>, in increasing order
+     * */
+    private static int[] toArray(BitVector bits) {
+        int[] array = new int[bits.cardinality()];
+        int i = 0;
+        for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1))
+            array[i++] = p;
+        return array;
+    }
+
+    /**
+     * Computes, to the fixpoint, the relaxed planning graph of <code>anchor</code>, from which the following
+     * evaluations start
+     * */
+    public void setAnchor(State anchor) {
+        this.state = anchor;
+        this.logging = false;
+        this.queueSize = 0;
+
+        Arrays.fill(this.level, INFINITY);
+        Arrays.fill(this.rhs, INFINITY);
+        for (int o = 0; o < this.operatorLevel.length; o++) {
+            this.operatorLevel[o] = this.operatorPreconds[o].length == 0 ? 0 : INFINITY;
+            if (this.operatorLevel[o] == 0)
+                for (int e : this.operatorEffects[o])
+                    this.rhs[e] = 1;
+        }
+        for (int p = anchor.nextSetBit(0); p >= 0; p = anchor.nextSetBit(p + 1))
+            this.rhs[p] = 0;
+        for (int p = 0; p < this.nbFluents; p++)
+            if (this.isRelevantNegative[p] && !anchor.get(p))
+                this.rhs[this.nbFluents + p] = 0;
+        for (int p = 0; p < 2 * this.nbFluents; p++)
+            if (this.rhs[p] != INFINITY)
+                push(p, this.rhs[p]);
+
+        propagate(false);
+    }
+
+    /**
+     * Returns the SUM value of the relaxed planning graph of <code>state</code>, or <code>Integer.MAX_VALUE</code>
+     * if the goal can't be reached from it. The graph of the anchor is left unchanged.
+     *
+     * @param anchor the state given to the last call of <code>setAnchor</code>
+     * @param state the state to evaluate
+     * */
+    public int evaluate(State anchor, State state) {
+        this.state = state;
+        this.logging = true;
+        this.logSize = 0;
+        this.queueSize = 0;
+        this.evaluation++;
+        this.nbAffectedFluents = 0;
+        this.nbAffectedOperators = 0;
+
+        this.difference.clear();
+        this.difference.or(anchor);
+        this.difference.xor(state);
+
+        // FIRST PHASE: find the fluents whose level can increase. The fluents that held in the anchor and don't hold
+        // anymore (and the negative fluents of the ones that now hold) are the first ones. They're queued by their
+        // level in the anchor graph, so when a fluent is taken from the queue all the fluents with a lower level
+        // have already been classified.
+        for (int p = this.difference.nextSetBit(0); p >= 0; p = this.difference.nextSetBit(p + 1)) {
+            final int lost = state.get(p) ? this.nbFluents + p : p;
+            if (lost < this.nbFluents || this.isRelevantNegative[p]) {
+                this.affectedFluent[lost] = this.evaluation;
+                push(lost, 0);
+            }
+        }
+        while (this.queueSize > 0) {
+            final int p = (int) this.queue[0];
+            pop();
+
+            // A candidate keeps its level if it still holds in the state, or if it's still reached by an operator
+            // at the same level none of whose preconditions is affected
+            if (this.level[p] > 0) {
+                if (holdsInState(p))
+                    continue;
+                boolean supported = false;
+                for (int o : this.achievers[p]) {
+                    if (this.affectedOperator[o] != this.evaluation && this.operatorLevel[o] + 1 == this.level[p]) {
+                        supported = true;
+                        break;
+                    }
+                }
+                if (supported)
+                    continue;
+            }
+            this.affectedFluents[this.nbAffectedFluents++] = p;
+
+            // The operators depending on this fluent are affected, and so are their effects reached through them
+            for (int o : this.precondOperators[p]) {
+                if (this.affectedOperator[o] == this.evaluation)
+                    continue;
+                this.affectedOperator[o] = this.evaluation;
+                this.affectedOperators[this.nbAffectedOperators++] = o;
+                if (this.operatorLevel[o] == INFINITY)
+                    continue;
+                for (int e : this.operatorEffects[o]) {
+                    if (this.affectedFluent[e] != this.evaluation && this.level[e] == this.operatorLevel[o] + 1) {
+                        this.affectedFluent[e] = this.evaluation;
+                        push(e, this.level[e]);
+                    }
+                }
+            }
+        }
+
+        // SECOND PHASE: set the affected operators and fluents to infinity and compute the rhs of the fluents from
+        // the operators that are not affected; the fluents that now hold in the state get rhs 0. From here on the
+        // levels can only decrease.
+        for (int i = 0; i < this.nbAffectedOperators; i++)
+            setOperatorLevel(this.affectedOperators[i], INFINITY);
+        for (int i = 0; i < this.nbAffectedFluents; i++) {
+            final int p = this.affectedFluents[i];
+            setLevel(p, INFINITY);
+            updateRhs(p);
+            if (this.rhs[p] != INFINITY)
+                push(p, this.rhs[p]);
+        }
+        for (int p = this.difference.nextSetBit(0); p >= 0; p = this.difference.nextSetBit(p + 1)) {
+            final int gained = state.get(p) ? p : this.nbFluents + p;
+            if (gained < this.nbFluents || this.isRelevantNegative[p])
+                updateRhs(gained);
+        }
+
+        propagate(true);
+
+        int value = 0;
+        for (int g : this.goals) {
+            if (this.level[g] == INFINITY) {
+                value = INFINITY;
+                break;
+            }
+            value += this.level[g];
+        }
+
+        // Roll back the changes, so that the graph is again the one of the anchor
+        for (int i = this.logSize - 1; i >= 0; i--) {
+            switch (this.logArray[i]) {
+                case 0:
+                    this.level[this.logIndex[i]] = this.logValue[i];
+                    break;
+                case 1:
+                    this.rhs[this.logIndex[i]] = this.logValue[i];
+                    break;
+                default:
+                    this.operatorLevel[this.logIndex[i]] = this.logValue[i];
+                    break;
+            }
+        }
+        this.logging = false;
+        this.state = anchor;
+        return value;
+    }
+
+    /**
+     * Processes the queue of the fluents whose rhs is smaller than their level, in order of rhs, lowering their
+     * level. If <code>stopAtGoals</code> is true, it stops as soon as the levels of the goals are final, otherwise it
+     * goes on until the whole graph is consistent.
+     * */
+    private void propagate(boolean stopAtGoals) {
+        while (this.queueSize > 0) {
+            final long top = this.queue[0];
+            final int key = (int) (top >>> 32);
+            final int p = (int) top;
+
+            // Skip the entries made obsolete by a later change of the fluent
+            if (this.rhs[p] >= this.level[p] || this.rhs[p] != key) {
+                pop();
+                continue;
+            }
+
+            if (stopAtGoals && goalsAreFinal(key))
+                return;
+
+            pop();
+            final int oldLevel = this.level[p];
+            setLevel(p, this.rhs[p]);
+            updateSuccessors(p, oldLevel);
+        }
+    }
+
+    /**
+     * Returns true if the fluent <code>p</code>, positive or negative, holds in the current state
+     * */
+    private boolean holdsInState(int p) {
+        return p < this.nbFluents ? this.state.get(p) : !this.state.get(p - this.nbFluents);
+    }
+
+    /**
+     * Returns true if all the goals are consistent and no fluent with a rhs smaller than their level is queued
+     * */
+    private boolean goalsAreFinal(int key) {
+        for (int g : this.goals)
+            if (this.level[g] != this.rhs[g] || key < this.level[g])
+                return false;
+        return true;
+    }
+
+    /**
+     * Updates the operators having <code>p</code> as a precondition, and then the rhs of their effects, after the
+     * level of <code>p</code> has been lowered from <code>oldLevel</code>. The level of an operator is the maximum
+     * level of its preconditions, so only the operators whose level was given by <code>p</code>, or that were not
+     * reached yet, can change.
+     * */
+    private void updateSuccessors(int p, int oldLevel) {
+        for (int o : this.precondOperators[p]) {
+            if (this.operatorLevel[o] > oldLevel && this.operatorLevel[o] != INFINITY)
+                continue;
+            int newLevel = 0;
+            for (int q : this.operatorPreconds[o]) {
+                if (this.level[q] > newLevel) {
+                    newLevel = this.level[q];
+                    if (newLevel == INFINITY)
+                        break;
+                }
+            }
+            if (newLevel >= this.operatorLevel[o])
+                continue;
+            setOperatorLevel(o, newLevel);
+
+            final int newValue = newLevel == INFINITY ? INFINITY : newLevel + 1;
+            for (int e : this.operatorEffects[o])
+                if (newValue < this.rhs[e])
+                    setRhs(e, newValue);
+        }
+    }
+
+    /**
+     * Computes the rhs of <code>p</code> from the state and the achievers of <code>p</code>
+     * */
+    private void updateRhs(int p) {
+        int value;
+        if (holdsInState(p)) {
+            value = 0;
+        }
+        else {
+            value = INFINITY;
+            for (int o : this.achievers[p]) {
+                final int opLevel = this.operatorLevel[o];
+                if (opLevel != INFINITY && opLevel + 1 < value)
+                    value = opLevel + 1;
+            }
+        }
+        if (value != this.rhs[p])
+            setRhs(p, value);
+    }
+
+    private void setLevel(int p, int value) {
+        log(0, p, this.level[p]);
+        this.level[p] = value;
+    }
+
+    /**
+     * Changes the rhs of <code>p</code> and queues it if it becomes inconsistent
+     * */
+    private void setRhs(int p, int value) {
+        log(1, p, this.rhs[p]);
+        this.rhs[p] = value;
+        if (this.level[p] != value)
+            push(p, Integer.min(this.level[p], value));
+    }
+
+    private void setOperatorLevel(int o, int value) {
+        log(2, o, this.operatorLevel[o]);
+        this.operatorLevel[o] = value;
+    }
+
+    private void log(int array, int index, int value) {
+        if (!this.logging)
+            return;
+        if (this.logSize == this.logArray.length) {
+            this.logArray = Arrays.copyOf(this.logArray, this.logSize * 2);
+            this.logIndex = Arrays.copyOf(this.logIndex, this.logSize * 2);
+            this.logValue = Arrays.copyOf(this.logValue, this.logSize * 2);
+        }
+        this.logArray[this.logSize] = array;
+        this.logIndex[this.logSize] = index;
+        this.logValue[this.logSize] = value;
+        this.logSize++;
+    }
+
+    private void push(int p, int key) {
+        if (this.queueSize == this.queue.length)
+            this.queue = Arrays.copyOf(this.queue, this.queueSize * 2);
+        final long entry = ((long) key << 32) | p;
+        int i = this.queueSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.queue[parent] <= entry)
+                break;
+            this.queue[i] = this.queue[parent];
+            i = parent;
+        }
+        this.queue[i] = entry;
+    }
+
+    private void pop() {
+        final long entry = this.queue[--this.queueSize];
+        int i = 0;
+        int half = this.queueSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.queueSize && this.queue[child + 1] < this.queue[child])
+                child++;
+            if (entry <= this.queue[child])
+                break;
+            this.queue[i] = this.queue[child];
+            i = child;
+        }
+        this.queue[i] = entry;
+    }
+}
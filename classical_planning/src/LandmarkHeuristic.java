@@ -0,0 +1,441 @@
+import fr.uga.pddl4j.problem.Fluent;
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A landmark heuristic for the domain, an alternative to the SUM value of the relaxed planning graph. The landmarks
+ * are facts that every plan must make true, and they're extracted once from the grounded problem: for every goal
+ * <code>(isSatisfied p c)</code> not true in the initial state,
+ * <ul>
+ *     <li>DELIVERED: the person <code>p</code> gets the content <code>c</code>, i.e. the goal itself;</li>
+ *     <li>FILLED: a box is filled with <code>c</code> for <code>p</code>, since every delivery empties a box;</li>
+ *     <li>REACHED: a carrier carrying a box with <code>c</code> reaches the location of <code>p</code>, unless
+ *     <code>p</code> is at the depot, where the boxes are filled.</li>
+ * </ul>
+ * and a counting landmark: a box must be unloaded for every box to fill beyond the free box places and the empty
+ * boxes left. The landmarks of a goal are ordered: FILLED and REACHED must be true right before DELIVERED, and FILLED
+ * must come before REACHED, since a carrier that reaches the location before the box is filled has to go back to the
+ * depot and come back again.
+ *
+ * The landmarks achieved are kept along the path in a bitset of three planes, one per kind of landmark, with a bit per
+ * goal (see <code>Node.getLandmarks</code>). The bitset of a node is the one of its parent updated by its action, and
+ * it's shared with the parent if the action achieves nothing, as the moves of an agent alone:
+ * <ul>
+ *     <li>a fill with <code>c</code> achieves FILLED for the first goal with <code>c</code> that isn't filled yet;</li>
+ *     <li>a delivery achieves DELIVERED for its goal; if the goal was not filled, the box delivered was counted for
+ *     another goal with the same content, which loses its FILLED and REACHED;</li>
+ *     <li>a move of a carrier achieves REACHED for the goals of the location reached that are already filled and
+ *     whose content is in a box loaded on the carrier, respecting the order FILLED before REACHED; and it loses
+ *     REACHED for the goals of the location left, if no other carrier stays there, since it has to be achieved
+ *     again.</li>
+ * </ul>
+ * The value of a node is the number of landmarks of the goals not delivered yet that are not achieved, plus the boxes
+ * to unload: it's an integer, as the buckets of the frontier need, and it's 0 only if all the goals are delivered.
+ * It's computed with a few bit counts on the words of the bitset, so it costs much less than a relaxed planning
+ * graph. It's not admissible, since two goals at the same location can be reached by the same move.
+ *
+ * The tables are never modified after the constructor and the heuristic keeps no scratch data, so the same object
+ * can be used by the copies of <code>MyHeuristic</code> on different threads.
+ * */
+public class LandmarkHeuristic {
+
+    private static final String DEPOT = "depot";
+
+    /**
+     * The planes of the bitset of the landmarks, in words from the start of the array
+     * */
+    private static final int DELIVERED = 0;
+    private static final int FILLED = 1;
+    private static final int REACHED = 2;
+
+    private final DomainModel model;
+
+    private final int nbGoals;
+
+    /**
+     * The number of words of a plane of the bitset
+     * */
+    private final int words;
+
+    /**
+     * For every goal, its fluent, its content and the location of its person
+     * */
+    private final int[] goalFluents;
+
+    private final int[] goalContents;
+
+    private final int[] goalLocations;
+
+    /**
+     * The goals whose person is not at the depot, which have a landmark REACHED
+     * */
+    private final long[] tripMask;
+
+    /**
+     * The goals of every person, of every content and of every location, indexed by object
+     * */
+    private final int[][] goalsOfPerson;
+
+    private final int[][] goalsOfContent;
+
+    private final int[][] goalsOfLocation;
+
+    /**
+     * The fluent <code>(at ca l)</code> of every carrier and location, and the fluents
+     * <code>(isLoadedOnCarrier b ca)</code> of every carrier and box, indexed by the positions of the objects among
+     * the objects of their type, and the fluent <code>(isInsideABox c b)</code> of every content, indexed by object,
+     * and box, or -1
+     * */
+    private final int[][] carrierAt;
+
+    private final int[][] loadedOn;
+
+    private final int[][] insideOf;
+
+    /**
+     * The boxes that can be loaded at the same time, the smallest of the box places and the boxes, and the boxes
+     * loaded in the initial state
+     * */
+    private final int capacity;
+
+    private final int initialLoaded;
+
+    /**
+     * Extracts the landmarks of <code>problem</code>. It throws an <code>IllegalArgumentException</code> if the goal
+     * is not only about the needs of the people, since then the landmarks would not cover it.
+     * */
+    public LandmarkHeuristic(Problem problem, DomainModel model) {
+        this.model = model;
+        final List<String> constants = problem.getConstantSymbols();
+        final List<Fluent> fluents = problem.getFluents();
+        final int nbConstants = constants.size();
+        final int[] carriers = model.getCarriers();
+        final int[] boxes = model.getBoxes();
+        final int[] locations = model.getLocations();
+
+        // The fluents that tell where the carriers are and what they carry
+        this.carrierAt = new int[carriers.length][locations.length];
+        this.loadedOn = new int[carriers.length][boxes.length];
+        this.insideOf = new int[nbConstants][];
+        for (int[] row : this.carrierAt)
+            Arrays.fill(row, -1);
+        for (int[] row : this.loadedOn)
+            Arrays.fill(row, -1);
+        for (int f = 0; f < fluents.size(); f++) {
+            final int[] arguments = fluents.get(f).getArguments();
+            switch (problem.getPredicateSymbols().get(fluents.get(f).getSymbol()).toLowerCase()) {
+                case "at":
+                    if (model.getType(arguments[0]) == DomainModel.CARRIER
+                            && model.getType(arguments[1]) == DomainModel.LOCATION)
+                        this.carrierAt[model.getIndex(arguments[0])][model.getIndex(arguments[1])] = f;
+                    break;
+                case "isloadedoncarrier":
+                    if (model.getType(arguments[0]) == DomainModel.BOX
+                            && model.getType(arguments[1]) == DomainModel.CARRIER)
+                        this.loadedOn[model.getIndex(arguments[1])][model.getIndex(arguments[0])] = f;
+                    break;
+                case "isinsideabox":
+                    if (model.getType(arguments[1]) == DomainModel.BOX) {
+                        if (this.insideOf[arguments[0]] == null) {
+                            this.insideOf[arguments[0]] = new int[boxes.length];
+                            Arrays.fill(this.insideOf[arguments[0]], -1);
+                        }
+                        this.insideOf[arguments[0]][model.getIndex(arguments[1])] = f;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Where the people are, and how many boxes are already loaded
+        final int[] location = new int[nbConstants];
+        Arrays.fill(location, -1);
+        int loaded = 0;
+        final BitVector init = problem.getInitialState().getPositiveFluents();
+        for (int f = init.nextSetBit(0); f >= 0; f = init.nextSetBit(f + 1)) {
+            final Fluent fluent = fluents.get(f);
+            final String predicate = problem.getPredicateSymbols().get(fluent.getSymbol());
+            if (predicate.equalsIgnoreCase("at") && model.getType(fluent.getArguments()[0]) != DomainModel.AGENT)
+                location[fluent.getArguments()[0]] = fluent.getArguments()[1];
+            else if (predicate.equalsIgnoreCase("isloadedoncarrier"))
+                loaded++;
+        }
+        this.initialLoaded = loaded;
+        this.capacity = Integer.min(model.getBoxPlaces().length, boxes.length);
+
+        // The goals, each one with the landmarks of its person and its content
+        if (!problem.getGoal().getNegativeFluents().isEmpty())
+            throw new IllegalArgumentException("the goal has negative fluents");
+        final BitVector goal = problem.getGoal().getPositiveFluents();
+        this.nbGoals = goal.cardinality();
+        this.words = Integer.max(1, (this.nbGoals + Long.SIZE - 1) / Long.SIZE);
+        this.goalFluents = new int[this.nbGoals];
+        this.goalContents = new int[this.nbGoals];
+        this.goalLocations = new int[this.nbGoals];
+        this.tripMask = new long[this.words];
+        final List<List<Integer>> ofPerson = emptyLists(nbConstants);
+        final List<List<Integer>> ofContent = emptyLists(nbConstants);
+        final List<List<Integer>> ofLocation = emptyLists(nbConstants);
+        int g = 0;
+        for (int f = goal.nextSetBit(0); f >= 0; f = goal.nextSetBit(f + 1), g++) {
+            final Fluent fluent = fluents.get(f);
+            if (!problem.getPredicateSymbols().get(fluent.getSymbol()).equalsIgnoreCase("issatisfied"))
+                throw new IllegalArgumentException("the goal is not only about the needs of the people");
+            final int person = fluent.getArguments()[0];
+            final int content = fluent.getArguments()[1];
+            if (location[person] < 0 || model.getType(location[person]) != DomainModel.LOCATION)
+                throw new IllegalArgumentException("a person of the goal is nowhere");
+            this.goalFluents[g] = f;
+            this.goalContents[g] = content;
+            this.goalLocations[g] = location[person];
+            if (!constants.get(location[person]).equalsIgnoreCase(DEPOT))
+                this.tripMask[g / Long.SIZE] |= 1L << g;
+            ofPerson.get(person).add(g);
+            ofContent.get(content).add(g);
+            ofLocation.get(location[person]).add(g);
+        }
+        this.goalsOfPerson = toArrays(ofPerson);
+        this.goalsOfContent = toArrays(ofContent);
+        this.goalsOfLocation = toArrays(ofLocation);
+    }
+
+    private static List<List<Integer>> emptyLists(int size) {
+        List<List<Integer>> lists = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            lists.add(new ArrayList<>());
+        return lists;
+    }
+
+    private static int[][] toArrays(List<List<Integer>> lists) {
+        int[][] arrays = new int[lists.size()][];
+        for (int i = 0; i < arrays.length; i++)
+            arrays[i] = lists.get(i).stream().mapToInt(Integer::intValue).toArray();
+        return arrays;
+    }
+
+    /**
+     * Returns the value of the heuristic for <code>node</code>: the landmarks not achieved of the goals not delivered,
+     * plus the boxes to unload
+     * */
+    public int estimate(Node node) {
+        final long[] landmarks = getLandmarks(node);
+        int value = 0;
+        int unfilled = 0;
+        for (int w = 0; w < this.words; w++) {
+            final long pending = ~landmarks[DELIVERED * this.words + w];
+            final long notFilled = pending & ~landmarks[FILLED * this.words + w];
+            final long notReached = pending & ~landmarks[REACHED * this.words + w] & this.tripMask[w];
+            value += Long.bitCount(pending & mask(w));
+            unfilled += Long.bitCount(notFilled & mask(w));
+            value += Long.bitCount(notReached);
+        }
+
+        // Every box to fill beyond the box places and the boxes left free needs a box to be unloaded first
+        final int free = this.capacity - this.initialLoaded - node.getNumLoadedBoxes();
+        return value + unfilled + Integer.max(0, unfilled - free);
+    }
+
+    /**
+     * Returns the bits of the goals in the word <code>w</code> of a plane
+     * */
+    private long mask(int w) {
+        final int bits = this.nbGoals - w * Long.SIZE;
+        return bits >= Long.SIZE ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * Returns the landmarks achieved along the path of <code>node</code>, computing them from the ones of its parent
+     * if they're not known yet: the search can leave them out on the nodes it reuses (see <code>Node.reuse</code>),
+     * and only the nodes of the path are read.
+     * */
+    private long[] getLandmarks(Node node) {
+        long[] landmarks = node.getLandmarks();
+        if (landmarks == null) {
+            landmarks = node.getParent() == null ? getInitialLandmarks(node) : apply(getLandmarks(node.getParent()),
+                    node);
+            node.setLandmarks(landmarks);
+        }
+        return landmarks;
+    }
+
+    /**
+     * Returns the landmarks already achieved in the state of the root: the goals already true, the boxes already
+     * filled, counted for the goals with their content, and the carriers already at the location of a goal with a
+     * box for it
+     * */
+    private long[] getInitialLandmarks(State state) {
+        final long[] landmarks = new long[3 * this.words];
+        for (int g = 0; g < this.nbGoals; g++)
+            if (state.get(this.goalFluents[g]))
+                set(landmarks, DELIVERED, g);
+        for (int content = 0; content < this.insideOf.length; content++) {
+            if (this.insideOf[content] == null)
+                continue;
+            int filled = 0;
+            for (int f : this.insideOf[content])
+                if (f >= 0 && state.get(f))
+                    filled++;
+            for (int g : this.goalsOfContent[content]) {
+                if (filled > 0 && !get(landmarks, DELIVERED, g)) {
+                    set(landmarks, FILLED, g);
+                    filled--;
+                }
+            }
+        }
+        for (int g = 0; g < this.nbGoals; g++) {
+            if (!get(landmarks, DELIVERED, g) && get(landmarks, FILLED, g))
+                for (int carrier = 0; carrier < this.carrierAt.length; carrier++)
+                    if (isAt(state, carrier, this.goalLocations[g]) && carries(state, carrier, this.goalContents[g]))
+                        set(landmarks, REACHED, g);
+        }
+        return landmarks;
+    }
+
+    /**
+     * Returns the landmarks of <code>node</code>, given the ones of its parent: the same array if its action achieves
+     * or loses nothing, or else an updated copy
+     * */
+    private long[] apply(long[] landmarks, Node node) {
+        final int kind = node.getActionKind();
+        final int[] parameters = node.getAction().getInstantiations();
+        long[] next = landmarks;
+        switch (kind) {
+            case DomainModel.FILL_BOX_AND_LOAD_IT_ON_CARRIER: {
+                final int content = parameters[DomainModel.contentOffset(kind)];
+                for (int g : this.goalsOfContent[content]) {
+                    if (!get(landmarks, DELIVERED, g) && !get(landmarks, FILLED, g)) {
+                        next = landmarks.clone();
+                        set(next, FILLED, g);
+                        break;
+                    }
+                }
+                break;
+            }
+
+            case DomainModel.UNLOAD_BOX_DELIVER_ITS_CONTENT_AND_RELOAD_IT_ON_CARRIER: {
+                final int content = parameters[DomainModel.contentOffset(kind)];
+                final int person = parameters[DomainModel.personOffset(kind)];
+                int delivered = -1;
+                for (int g : this.goalsOfPerson[person])
+                    if (this.goalContents[g] == content)
+                        delivered = g;
+                next = landmarks.clone();
+
+                // The box delivered was counted for another goal with the same content: that goal loses it, the one
+                // not reached yet if possible
+                if (delivered < 0 || !get(landmarks, FILLED, delivered)) {
+                    int loser = -1;
+                    for (int g : this.goalsOfContent[content]) {
+                        if (g != delivered && !get(landmarks, DELIVERED, g) && get(landmarks, FILLED, g)
+                                && (loser < 0 || !get(landmarks, REACHED, g)))
+                            loser = g;
+                    }
+                    if (loser >= 0) {
+                        clear(next, FILLED, loser);
+                        clear(next, REACHED, loser);
+                    }
+                }
+                if (delivered >= 0) {
+                    set(next, DELIVERED, delivered);
+                    set(next, FILLED, delivered);
+                }
+                break;
+            }
+
+            case DomainModel.MOVE_AGENT_AND_CARRIER: {
+                final int carrier = this.model.getIndex(parameters[DomainModel.carrierOffset(kind)]);
+                final int origin = parameters[DomainModel.originOffset(kind)];
+                final int destination = parameters[DomainModel.destinationOffset(kind)];
+
+                // The goals of the location left must be reached again, unless another carrier stays there
+                if (this.goalsOfLocation[origin].length > 0 && !isAnyCarrierAt(node, origin)) {
+                    for (int g : this.goalsOfLocation[origin]) {
+                        if (!get(landmarks, DELIVERED, g) && get(landmarks, REACHED, g)) {
+                            if (next == landmarks)
+                                next = landmarks.clone();
+                            clear(next, REACHED, g);
+                        }
+                    }
+                }
+
+                // The goals of the location reached are reached if they're filled and the carrier has their content
+                for (int g : this.goalsOfLocation[destination]) {
+                    if (!get(landmarks, DELIVERED, g) && get(landmarks, FILLED, g) && !get(landmarks, REACHED, g)
+                            && carries(node, carrier, this.goalContents[g])) {
+                        if (next == landmarks)
+                            next = landmarks.clone();
+                        set(next, REACHED, g);
+                    }
+                }
+                break;
+            }
+
+            default:
+                break;
+        }
+        return next;
+    }
+
+    /**
+     * Returns true if the carrier in position <code>carrier</code> is at <code>location</code> in <code>state</code>
+     * */
+    private boolean isAt(State state, int carrier, int location) {
+        final int f = this.carrierAt[carrier][this.model.getIndex(location)];
+        return f >= 0 && state.get(f);
+    }
+
+    /**
+     * Returns true if a carrier is at <code>location</code> in <code>state</code>
+     * */
+    private boolean isAnyCarrierAt(State state, int location) {
+        for (int carrier = 0; carrier < this.carrierAt.length; carrier++)
+            if (isAt(state, carrier, location))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns true if the carrier in position <code>carrier</code> has a box with <code>content</code> loaded in
+     * <code>state</code>
+     * */
+    private boolean carries(State state, int carrier, int content) {
+        final int[] inside = this.insideOf[content];
+        if (inside == null)
+            return false;
+        for (int box = 0; box < inside.length; box++) {
+            final int loaded = this.loadedOn[carrier][box];
+            if (inside[box] >= 0 && loaded >= 0 && state.get(inside[box]) && state.get(loaded))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean get(long[] landmarks, int plane, int goal) {
+        return (landmarks[plane * this.words + goal / Long.SIZE] & (1L << goal)) != 0;
+    }
+
+    private void set(long[] landmarks, int plane, int goal) {
+        landmarks[plane * this.words + goal / Long.SIZE] |= 1L << goal;
+    }
+
+    private void clear(long[] landmarks, int plane, int goal) {
+        landmarks[plane * this.words + goal / Long.SIZE] &= ~(1L << goal);
+    }
+
+    /**
+     * Returns the number of landmarks of every kind, for the log
+     * */
+    public String describe() {
+        int reached = 0;
+        for (long word : this.tripMask)
+            reached += Long.bitCount(word);
+        return this.nbGoals + " delivered, " + this.nbGoals + " filled, " + reached + " reached, and the boxes to "
+                + "unload beyond " + this.capacity + " loaded at the same time";
+    }
+}
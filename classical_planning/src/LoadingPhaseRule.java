@@ -0,0 +1,31 @@
+/**
+ * The first actions of a plan load the boxes: as long as the depth of the node is not greater than the minimum
+ * between the number of boxes and the number of box places, every action must have been a
+ * 'fill_box_and_load_it_on_carrier', so the number of loaded boxes must be equal to the depth of the node.
+ * */
+public class LoadingPhaseRule implements PruningRule {
+
+    /**
+     * The number of actions of the loading phase
+     * */
+    private final int loadingActions;
+
+    public LoadingPhaseRule(DomainModel model) {
+        this.loadingActions = Integer.min(model.getBoxes().length, model.getBoxPlaces().length);
+    }
+
+    @Override
+    public String getName() {
+        return "loading-phase";
+    }
+
+    @Override
+    public int getCost() {
+        return 1;
+    }
+
+    @Override
+    public boolean prune(Node node) {
+        return node.getDepth() <= this.loadingActions && node.getNumLoadedBoxes() != node.getDepth();
+    }
+}
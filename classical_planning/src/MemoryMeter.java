@@ -0,0 +1,152 @@
+import fr.uga.pddl4j.problem.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Cheap accounting of the memory used by a search, that never walks the graph of the nodes:
+ * <ul>
+ *     <li>the bytes allocated by the threads of the search, read from the counters of the JVM
+ *     (<code>com.sun.management.ThreadMXBean</code>), when it supports them;</li>
+ *     <li>the peak of the heap, from the memory pools of the heap. It's a peak of the whole JVM, since the start of
+ *     the JVM or the last call to <code>resetHeapPeaks</code>, and it includes what solves running at the same time
+ *     have allocated;</li>
+ *     <li>an estimate of the memory taken by the nodes: their number times the size of a node, computed once from the
+ *     fields of the class and the length of the bitset of the state.</li>
+ * </ul>
+ * The first two include the garbage and everything else the JVM allocates, the last one only the nodes, so they're
+ * reported separately. The exact size of the graph of the nodes can still be measured with JOL, but walking it can
+ * take longer than the search: see the option <code>--jol-memory</code> of <code>MyAlgorithm</code>.
+ * */
+public class MemoryMeter {
+
+    /**
+     * Sizes of the layout of the objects on a 64-bit JVM with compressed references, the default below 32 GB of heap
+     * */
+    private static final int OBJECT_HEADER = 12;
+
+    private static final int ARRAY_HEADER = 16;
+
+    private static final int REFERENCE = 4;
+
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * The shallow size of a node, computed the first time it's needed
+     * */
+    private static long nodeShallowSize = -1;
+
+    private final com.sun.management.ThreadMXBean threadBean;
+
+    private final long allocatedAtStart;
+
+    /**
+     * The bytes allocated by other threads of the search, reported by them before they end
+     * */
+    private long otherThreadsAllocated;
+
+    /**
+     * Starts the meter: the bytes allocated by the current thread from now on are counted. The peaks of the heap are
+     * not reset, since other meters may be running in other threads, see <code>resetHeapPeaks</code>.
+     * */
+    public MemoryMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled())
+            this.threadBean = (com.sun.management.ThreadMXBean) bean;
+        else
+            this.threadBean = null;
+        this.allocatedAtStart = currentThreadAllocatedBytes();
+        this.otherThreadsAllocated = 0;
+    }
+
+    /**
+     * Resets the peaks of the memory pools of the heap to their current usage. The peaks are shared by the whole JVM,
+     * so this is only meaningful when a single solve runs: resetting them while another solve runs would lose its
+     * peak.
+     * */
+    public static void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.isValid())
+                pool.resetPeakUsage();
+    }
+
+    /**
+     * Returns the bytes allocated until now by the current thread, or 0 if the JVM doesn't count them
+     * */
+    public long currentThreadAllocatedBytes() {
+        return this.threadBean != null ? this.threadBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Adds the bytes allocated by another thread of the search. It's called by the thread itself, with the value of
+     * <code>currentThreadAllocatedBytes</code> when it has started and when it has finished its work.
+     * */
+    public synchronized void addOtherThreadAllocatedBytes(long bytes) {
+        this.otherThreadsAllocated += bytes;
+    }
+
+    /**
+     * Returns the bytes allocated since the start of the meter by the current thread and the ones reported by the
+     * other threads, or 0 if the JVM doesn't count them
+     * */
+    public synchronized long getAllocatedBytes() {
+        return currentThreadAllocatedBytes() - this.allocatedAtStart + this.otherThreadsAllocated;
+    }
+
+    /**
+     * Returns the sum of the peaks of the memory pools of the heap since the start of the JVM or the last call to
+     * <code>resetHeapPeaks</code>. It's not a peak of this search alone: the solves running at the same time share it.
+     * */
+    public long getPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.isValid() && pool.getPeakUsage() != null)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    /**
+     * Returns an estimate of the memory taken by <code>nodes</code> nodes with a state like the one of
+     * <code>state</code>: the shallow size of a node plus the array of the words of its bitset
+     * */
+    public static long estimateNodes(long nodes, State state) {
+        return nodes * (getNodeShallowSize() + align(ARRAY_HEADER + (long) Long.BYTES * state.toLongArray().length));
+    }
+
+    /**
+     * Returns the shallow size of a node, i.e. the header and the fields declared by its class and by the classes it
+     * extends
+     * */
+    private static synchronized long getNodeShallowSize() {
+        if (nodeShallowSize < 0) {
+            long size = OBJECT_HEADER;
+            for (Class<?> c = Node.class; c != null; c = c.getSuperclass())
+                for (Field field : c.getDeclaredFields())
+                    if (!Modifier.isStatic(field.getModifiers()))
+                        size += fieldSize(field.getType());
+            nodeShallowSize = align(size);
+        }
+        return nodeShallowSize;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class)
+            return 8;
+        if (type == int.class || type == float.class)
+            return 4;
+        if (type == short.class || type == char.class)
+            return 2;
+        if (type == byte.class || type == boolean.class)
+            return 1;
+        return REFERENCE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * After the loading phase (see <code>LoadingPhaseRule</code>) there must be a number of moves equal to the minimum
+ * between the number of agents and the number of carriers, one for every agent that leaves the depot with a carrier:
+ * so the node at the end of these moves must have performed exactly that number of moves.
+ * */
+public class MovesAfterLoadingRule implements PruningRule {
+
+    /**
+     * The number of moves after the loading phase
+     * */
+    private final int moves;
+
+    /**
+     * The depth of the node at the end of those moves
+     * */
+    private final int depth;
+
+    public MovesAfterLoadingRule(DomainModel model) {
+        this.moves = Integer.min(model.getAgents().length, model.getCarriers().length);
+        this.depth = Integer.min(model.getBoxes().length, model.getBoxPlaces().length) + this.moves;
+    }
+
+    @Override
+    public String getName() {
+        return "moves-after-loading";
+    }
+
+    @Override
+    public int getCost() {
+        return 1;
+    }
+
+    @Override
+    public boolean prune(Node node) {
+        return node.getDepth() == this.depth && node.getTotalNumberOfMoveActions() != this.moves;
+    }
+}
@@ -9,11 +9,13 @@ import fr.uga.pddl4j.problem.DefaultProblem;
 import fr.uga.pddl4j.problem.Problem;
 import fr.uga.pddl4j.problem.State;
 import fr.uga.pddl4j.problem.operator.Action;
-import fr.uga.pddl4j.problem.operator.ConditionalEffect;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openjdk.jol.info.GraphLayout;
 import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 
@@ -23,36 +25,379 @@ public class MyAlgorithm extends AbstractPlanner {
 
     private int exploredNodes;
 
+    private long heuristicEvaluations;
+
+    /**
+     * The statistics of the pruning rules during the last search
+     * */
+    private PruningEngine pruningStatistics;
+
+    /**
+     * True if the heuristic of the successors is computed from the relaxed planning graph of their parent
+     * */
+    private boolean incrementalHeuristic;
+
+    /**
+     * The name of the kernel used to expand the relaxed planning graph on bitsets, or null to expand it one fluent
+     * at a time
+     * */
+    private String bitsetKernel;
+
+    /**
+     * The number of threads on which the successors of a node are generated and evaluated
+     * */
+    private int threads;
+
+    /**
+     * True if the search is the hash-distributed A* on <code>threads</code> workers
+     * */
+    private boolean hdaStar;
+
+    /**
+     * True if the memory used by the search is measured by walking the frontier with JOL, instead of being estimated
+     * by <code>MemoryMeter</code>
+     * */
+    private boolean jolMemory;
+
+    /**
+     * True if the search goes on after the first plan, looking for shorter ones until the timeout
+     * */
+    private boolean anytime;
+
+    /**
+     * True if the states that differ only by interchangeable objects are explored once (see <code>Symmetry</code>)
+     * */
+    private boolean symmetry;
+
+    /**
+     * True if the search is the iterative deepening A* (see <code>IdaStarSearch</code>)
+     * */
+    private boolean idaStar;
+
+    /**
+     * The weight of the heuristic in the iterative deepening A*
+     * */
+    private int idaWeight;
+
+    /**
+     * The number of entries of the transposition table of the iterative deepening A*
+     * */
+    private int idaTable;
+
+    /**
+     * The number of nodes kept at every depth by the beam search, or 0 to search with A*
+     * */
+    private int beamWidth;
+
+    /**
+     * The number of depths among which the beam search finds the duplicates
+     * */
+    private int beamWindow;
+
+    /**
+     * The memory ceiling of the beam search in megabytes, or 0 for none
+     * */
+    private int beamMemory;
+
+    /**
+     * True if the problem is split among the teams of an agent and a carrier (see <code>DecompositionPlanner</code>)
+     * */
+    private boolean decompose;
+
+    /**
+     * True if the heuristic counts the landmarks still to achieve instead of expanding the relaxed planning graph
+     * */
+    private boolean landmarks;
+
+    /**
+     * True if the ties of the frontier are broken by the most recent insertion (see <code>Frontier</code>)
+     * */
+    private boolean lifoTies;
+
+    /**
+     * The directory of the cache of the grounded problems, or null if the problems are always grounded
+     * */
+    private String groundingCache;
+
+    /**
+     * Number of nodes explored between two checks of the deadline of the search
+     * */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
     public MyAlgorithm() {
         exploredNodes = 0;
+        heuristicEvaluations = 0;
     }
 
     public int getExploredNodes(){
         return exploredNodes;
     }
 
+    /**
+     * Returns the number of times the heuristic has been computed during the last search
+     * */
+    public long getHeuristicEvaluations(){
+        return heuristicEvaluations;
+    }
+
+    /**
+     * Returns the statistics of the pruning rules during the last search, or null if no search has been done
+     * */
+    public PruningEngine getPruningStatistics(){
+        return pruningStatistics;
+    }
+
+    /**
+     * Chooses whether the heuristic of the successors is computed from the relaxed planning graph of their parent
+     * instead of from scratch. Both ways give the same values, but in this domain updating the graph of the parent
+     * is 2 to 2.6 times slower (see <code>IncrementalRelaxedGraph</code>).
+     * */
+    @CommandLine.Option(names = {"--incremental-heuristic"}, defaultValue = "false",
+            description = "Compute the heuristic of the successors from the relaxed graph of their parent, which "
+                    + "gives the same values but is slower in this domain (preset: false)")
+    public void setIncrementalHeuristic(boolean incrementalHeuristic) {
+        this.incrementalHeuristic = incrementalHeuristic;
+    }
+
+    /**
+     * Chooses whether the relaxed planning graph of the heuristic is expanded on bitsets, with the scalar or the
+     * vector kernel (see <code>BitsetKernel</code>), instead of one fluent at a time. All the ways give the same
+     * values.
+     * */
+    @CommandLine.Option(names = {"--bitset-kernel"}, paramLabel = "<scalar|vector>",
+            description = "Expand the relaxed graph of the heuristic on bitsets with the given kernel")
+    public void setBitsetKernel(String bitsetKernel) {
+        this.bitsetKernel = bitsetKernel;
+    }
+
+    /**
+     * Sets the number of threads on which the successors of a node are generated and evaluated. With more than one
+     * thread the search explores the same nodes and finds the same plan as with one.
+     * */
+    @CommandLine.Option(names = {"--threads"}, defaultValue = "1", paramLabel = "<threads>",
+            description = "Number of threads expanding the nodes (preset: 1)")
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Chooses the hash-distributed A* (see <code>HdaStarSearch</code>) instead of the sequential search. It uses as
+     * many workers as the threads set by <code>--threads</code>.
+     * */
+    @CommandLine.Option(names = {"--hda"}, defaultValue = "false",
+            description = "Use the hash-distributed A* search on the given number of threads (preset: false)")
+    public void setHdaStar(boolean hdaStar) {
+        this.hdaStar = hdaStar;
+    }
+
+    /**
+     * Chooses whether the memory used by the search is measured by walking the graph of the frontier with JOL every
+     * time it's pruned and at the end of the search. It's exact but it can take longer than the search itself, so by
+     * default the memory is estimated by <code>MemoryMeter</code>.
+     * */
+    @CommandLine.Option(names = {"--jol-memory"}, defaultValue = "false",
+            description = "Measure the memory of the search by walking the frontier with JOL (slow, preset: false)")
+    public void setJolMemory(boolean jolMemory) {
+        this.jolMemory = jolMemory;
+    }
+
+    /**
+     * Chooses whether the search returns the first plan found or goes on looking for shorter ones until the timeout,
+     * returning the shortest one found. Only the sequential search supports it.
+     * */
+    @CommandLine.Option(names = {"--anytime"}, defaultValue = "false",
+            description = "Keep searching shorter plans after the first one until the timeout (preset: false)")
+    public void setAnytime(boolean anytime) {
+        this.anytime = anytime;
+    }
+
+    /**
+     * Chooses whether the search explores only once the states that differ just by a permutation of interchangeable
+     * objects, such as identical boxes, found when the search starts (see <code>Symmetry</code>). The fingerprint of
+     * a state is then computed from its whole canonical form, instead of being updated from the parent.
+     * */
+    @CommandLine.Option(names = {"--symmetry"}, defaultValue = "false",
+            description = "Explore once the states symmetric by interchangeable objects (preset: false)")
+    public void setSymmetry(boolean symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Chooses the iterative deepening A* (see <code>IdaStarSearch</code>) instead of A*: its memory grows with the
+     * depth of the plan, not with the nodes generated, but it expands the nodes of the first depths again at every
+     * iteration.
+     * */
+    @CommandLine.Option(names = {"--ida"}, defaultValue = "false",
+            description = "Use the iterative deepening A* search, whose memory grows only with the depth "
+                    + "(preset: false)")
+    public void setIdaStar(boolean idaStar) {
+        this.idaStar = idaStar;
+    }
+
+    /**
+     * Sets the weight of the heuristic in the iterative deepening A*: with 1 the search is plain IDA*, which on the
+     * problems with more than a few people visits again and again the subtrees that lead nowhere, because SUM
+     * overestimates; with 2, the default, it finds a plan in the first iteration on all the problems we have.
+     * */
+    @CommandLine.Option(names = {"--ida-weight"}, defaultValue = "2", paramLabel = "<weight>",
+            description = "Weight of the heuristic in the iterative deepening A* (preset: 2)")
+    public void setIdaWeight(int idaWeight) {
+        this.idaWeight = idaWeight;
+    }
+
+    /**
+     * Sets the number of entries of the transposition table of the iterative deepening A*
+     * */
+    @CommandLine.Option(names = {"--ida-table"}, defaultValue = "65536", paramLabel = "<entries>",
+            description = "Number of entries of the transposition table of the iterative deepening A* "
+                    + "(preset: 65536)")
+    public void setIdaTable(int idaTable) {
+        this.idaTable = idaTable;
+    }
+
+    /**
+     * Chooses the beam search instead of A*, keeping <code>beamWidth</code> nodes at every depth (see
+     * <code>BeamSearch</code>): its memory grows with the depth of the plan, not with the nodes generated, but it may
+     * find longer plans, or none. With 0, the default, the search is A*.
+     * */
+    @CommandLine.Option(names = {"--beam-width"}, defaultValue = "0", paramLabel = "<width>",
+            description = "Search with a beam of this width instead of A* (preset: 0, i.e. A*)")
+    public void setBeamWidth(int beamWidth) {
+        this.beamWidth = beamWidth;
+    }
+
+    /**
+     * Sets the number of depths among which the beam search finds the duplicates
+     * */
+    @CommandLine.Option(names = {"--beam-window"}, defaultValue = "2", paramLabel = "<depths>",
+            description = "Number of depths among which the beam search finds the duplicates (preset: 2)")
+    public void setBeamWindow(int beamWindow) {
+        this.beamWindow = beamWindow;
+    }
+
+    /**
+     * Sets the memory ceiling of the beam search, in megabytes: above it the width of the beam is halved
+     * */
+    @CommandLine.Option(names = {"--beam-memory"}, defaultValue = "0", paramLabel = "<MB>",
+            description = "Memory ceiling of the beam search, in MB, above which the width is halved (preset: 0, "
+                    + "none)")
+    public void setBeamMemory(int beamMemory) {
+        this.beamMemory = beamMemory;
+    }
+
+    /**
+     * Chooses to split the problem among the teams of an agent and a carrier, which are solved at the same time with
+     * the search chosen by the other options, and to merge their plans (see <code>DecompositionPlanner</code>). If
+     * the problem can't be split or the plans can't be merged, the whole problem is searched.
+     * */
+    @CommandLine.Option(names = {"--decompose"}, defaultValue = "false",
+            description = "Split the problem among the agent/carrier teams and solve them at the same time, "
+                    + "searching the whole problem if it fails (preset: false)")
+    public void setDecompose(boolean decompose) {
+        this.decompose = decompose;
+    }
+
+    /**
+     * Chooses whether the heuristic counts the landmarks of the goals still to achieve (see
+     * <code>LandmarkHeuristic</code>) instead of computing the SUM value of the relaxed planning graph. If the goal is
+     * not only about the needs of the people, the relaxed planning graph is used.
+     * */
+    @CommandLine.Option(names = {"--landmarks"}, defaultValue = "false",
+            description = "Count the landmarks still to achieve instead of expanding the relaxed graph (preset: false)")
+    public void setLandmarks(boolean landmarks) {
+        this.landmarks = landmarks;
+    }
+
+    /**
+     * Chooses whether the ties between nodes with the same priority in the frontier are broken by the most recent
+     * insertion, which explores fewer nodes but finds longer plans, instead of as the original
+     * <code>PriorityQueue</code>. Only with these ties the frontier drops the nodes above the best heuristic without
+     * visiting them (see <code>Frontier</code>)
+     * */
+    @CommandLine.Option(names = {"--lifo-ties"}, defaultValue = "false",
+            description = "Explore first the most recent of the nodes with the same priority, which explores fewer "
+                    + "nodes but finds longer plans, and prune the frontier by whole buckets of the heuristic "
+                    + "(preset: false)")
+    public void setLifoTies(boolean lifoTies) {
+        this.lifoTies = lifoTies;
+    }
+
+    /**
+     * Sets the directory of the cache of the grounded problems (see <code>GroundingCache</code>): a problem already
+     * solved is loaded from it instead of being grounded again.
+     * */
+    @CommandLine.Option(names = {"--grounding-cache"}, paramLabel = "<directory>",
+            description = "Directory where the grounded problems are cached")
+    public void setGroundingCache(String groundingCache) {
+        this.groundingCache = groundingCache;
+    }
+
     @Override
     public Problem instantiate(DefaultParsedProblem problem) {
+        GroundingCache cache = null;
+        String key = null;
+        if (this.groundingCache != null && this.getDomainFile() != null && this.getProblemFile() != null) {
+            try {
+                cache = new GroundingCache(Paths.get(this.groundingCache));
+                key = cache.key(this.getDomainFile(), this.getProblemFile());
+                Problem cached = cache.load(key);
+                if (cached != null) {
+                    LOGGER.info("* Grounded problem loaded from the cache\n");
+                    return cached;
+                }
+            }
+            catch (IOException e) {
+                LOGGER.warn("Cannot read the grounding cache: " + e.getMessage() + "\n");
+                cache = null;
+            }
+        }
+
         Problem pb = new DefaultProblem(problem);
         pb.instantiate();
+
+        if (cache != null) {
+            try {
+                cache.store(key, pb);
+            }
+            catch (IOException | IllegalArgumentException e) {
+                LOGGER.warn("Cannot write the grounding cache: " + e.getMessage() + "\n");
+            }
+        }
         return pb;
     }
 
     @Override
     public Plan solve(Problem problem) {
-        LOGGER.info("* Starting My ASTAR search with MYHEURISTIC heuristic \n");
+        String search = this.decompose ? "Decomposed" : getWholeProblemSearch();
+        LOGGER.info("* Starting " + search + " search with MYHEURISTIC heuristic \n");
         Plan plan = null;
 
         try {
             long begin = System.currentTimeMillis();
-            plan = this.My_ASTAR(problem);
+            if (this.decompose) {
+                plan = this.My_DECOMPOSED(problem);
+                if (plan == null) {
+                    search = getWholeProblemSearch();
+                    LOGGER.info("* Starting " + search + " search with MYHEURISTIC heuristic \n");
+                }
+            }
+            if (plan == null) {
+                if (this.beamWidth > 0)
+                    plan = this.My_BEAM(problem);
+                else if (this.idaStar)
+                    plan = this.My_IDASTAR(problem);
+                else
+                    plan = this.hdaStar ? this.My_HDASTAR(problem) : this.My_ASTAR(problem);
+            }
             long end = System.currentTimeMillis();
 
             if (plan != null) {
-                LOGGER.info("* My ASTAR search with MYHEURISTIC heuristic succeeded\n");
+                LOGGER.info("* " + search + " search with MYHEURISTIC heuristic succeeded\n");
                 this.getStatistics().setTimeToSearch(end - begin);
             } else {
-                LOGGER.info("* My ASTAR search with MYHEURISTIC heuristic failed\n");
+                LOGGER.info("* " + search + " search with MYHEURISTIC heuristic failed\n");
             }
             return plan;
 
@@ -63,6 +408,18 @@ public class MyAlgorithm extends AbstractPlanner {
         }
     }
 
+    /**
+     * Returns the name of the search run on the whole problem, chosen by the options in the same order as
+     * <code>solve</code>
+     * */
+    private String getWholeProblemSearch() {
+        if (this.beamWidth > 0)
+            return "Beam";
+        if (this.idaStar)
+            return "IDA*";
+        return this.hdaStar ? "HDA*" : "A*";
+    }
+
     /**
      * Do an A star search to find a solution to the problem. This specific version of A star uses a frontier of
      * nodes ordered by 4 features:
@@ -108,79 +465,131 @@ public class MyAlgorithm extends AbstractPlanner {
         }
 
         // The heuristic used in the search
-        MyHeuristic heuristic = new MyHeuristic(problem);
+        MyHeuristic heuristic = createHeuristic(problem);
+
+        // The kinds of the actions and the objects of every type, compiled by the heuristic
+        DomainModel model = heuristic.getModel();
+
+        // The index of the actions of the problem, used to get the actions applicable to a node
+        SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+
+        // The effects of the actions of the problem, compiled into bit masks
+        CompiledEffects compiledEffects = new CompiledEffects(problem);
+
+        // The symmetries between the objects of the problem, if the symmetric states are explored once
+        Symmetry symmetry = createSymmetry(problem, model);
+
+        // With more than one thread, the successors of a node are generated and evaluated in parallel
+        ParallelExpansion parallelExpansion = this.threads > 1
+                ? new ParallelExpansion(problem, compiledEffects, heuristic, this.threads) : null;
+        if (parallelExpansion != null)
+            parallelExpansion.setSymmetry(symmetry);
 
         // Initial state of the problem
         State init = new State(problem.getInitialState());
 
-        // Set of nodes already explored
-        Set<Node> alreadyExploredNodes = new HashSet<>();
+        // The accounting of the memory used by the search
+        MemoryMeter memoryMeter = new MemoryMeter();
+
+        // Set of states already explored, kept as their fingerprints with the cost at which they've been explored
+        Zobrist zobrist = new Zobrist(problem.getFluents().size());
+        ClosedSet alreadyExploredNodes = new ClosedSet();
 
-        // The frontier (nodes that have to be explored), ordered by:
+        // The frontier (nodes that have to be explored), ordered by their priority, i.e.:
         // - Number of 'move' actions
         // - Number of 'fill' actions
         // - Number of 'unload_deliver_load' actions
         // - Cost
-        PriorityQueue<Node> frontier = new PriorityQueue<>((n1, n2) -> {
-            return (int)( n1.getTotalNumberOfMoveActions() - n2.getTotalNumberOfMoveActions()
-                    - n1.getTotalNumberOfFillActions() + n2.getTotalNumberOfFillActions()
-                    - n1.getTotalNumberOfDeliverActions() + n2.getTotalNumberOfDeliverActions()
-                    + n1.getCost() - n2.getCost());
-        });
-
-        PriorityQueue<Node> newFrontier = null;
-
-        // Matrix with useful information about the agents
-        int[][] agentFacts = new int[heuristic.getNumAgents()][6];
-        for(int i = 0; i < agentFacts.length; i++)
-            agentFacts[i][0] = heuristic.getAgentAtIndex(i);
-
-        // Matrix with useful information about the carriers
-        int[][] carrierFacts = new int[heuristic.getNumCarriers()][2];
-        for(int i = 0; i < carrierFacts.length; i++)
-            carrierFacts[i][0] = heuristic.getCarrierAtIndex(i);
-
-        // Mapping between the boxes and their content
-        HashMap<Integer, Integer> boxFacts = new HashMap<>();
+        // Among nodes with the same priority, the most recently inserted is explored first with LIFO ties, or else the
+        // one the original PriorityQueue would have given
+        Frontier frontier = new Frontier(this.lifoTies);
 
         // Root node from which the search begins
-        Node root = new Node(init, null, 0, null, 0, agentFacts, carrierFacts, boxFacts);
-        frontier.add(root);
+        Node root = createRoot(init, heuristic);
+        root.computeFingerprint(zobrist, symmetry);
+        root.setHeuristic(heuristic.estimate(root));
+        frontier.offer(root);
 
         // The best heuristic found until now
-        double bestHeuristic = heuristic.estimate(root);
+        double bestHeuristic = root.getHeuristic();
 
         Node current = root;
 
-        // Set the search timeout
-        int timeout = this.getTimeout() * 1000;
-        int time = 0;
+        // The shortest plan found until now, in anytime mode, its cost, and the number of states explored by the
+        // searches that found the previous plans
+        Node bestSolution = null;
+        double bestCost = Double.MAX_VALUE;
+        int previouslyExploredNodes = 0;
 
-        // Amount of memory used for the search
+        // The deadline of the search, on a monotonic clock. Reading the clock is cheap but not free, so it's checked
+        // only every DEADLINE_CHECK_INTERVAL iterations
+        final long deadline = System.nanoTime() + this.getTimeout() * 1_000_000_000L;
+        long iterations = 0;
+
+        // Amount of memory used for the search, measured with JOL if it's asked
         long memoryUsedForSearch = 0;
 
         // Start the search
-        while (!frontier.isEmpty() && time < timeout) {
+        while (!frontier.isEmpty()) {
+
+            if (++iterations % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                LOGGER.info("* Search stopped by the timeout\n");
+                break;
+            }
 
             // Take the best node from the frontier
             current = frontier.poll();
 
+            // In anytime mode, a node that is not cheaper than the best plan can't lead to a shorter one
+            if (current.getCost() >= bestCost)
+                continue;
+
+            // Insert the current node in the set of already explored nodes. If its state has already been explored
+            // with a cost not greater than its own, the node is a duplicate left in the frontier and it's skipped;
+            // if its cost is smaller, the state is reopened and explored again
+            if (!alreadyExploredNodes.add(current.getFingerprint(), (int) current.getCost()))
+                continue;
+
             // Add the number of explored nodes
             exploredNodes++;
 
-            // Insert the current node in the list of already explored nodes
-            alreadyExploredNodes.add(current);
-
-            // Compute the heuristic of the current node
-            double currentHeuristic = heuristic.estimate(current);
+            // Take the heuristic of the current node, computed when the node was generated
+            double currentHeuristic = current.getHeuristic();
+
+            // If the heuristic is 0, it is a solution to the problem. In anytime mode, it's kept as the best plan
+            // and the search starts again from the root, looking only for shorter plans: the pruning on the best
+            // heuristic has emptied most of the frontier by now, so continuing the same search would rarely find
+            // any. It ends when a search runs out of nodes, i.e. no shorter plan exists, or at the deadline
+            if (currentHeuristic == 0.0 && this.anytime) {
+                bestSolution = current;
+                bestCost = current.getCost();
+                LOGGER.info("* Plan of " + (int) bestCost + " steps found after " + exploredNodes
+                        + " explored nodes, looking for a shorter one\n");
+
+                previouslyExploredNodes += alreadyExploredNodes.size();
+                alreadyExploredNodes.clear();
+                frontier.clear();
+                frontier.offer(root);
+                bestHeuristic = root.getHeuristic();
+            }
 
-            // If the heuristic is 0, it is a solution to the problem.
-            // Then we extract the plan from it and return it, also save the amount of memory used for the search
+            // Otherwise we extract the plan from it and return it, also save the amount of memory used for the search
             // and the number of explored nodes
-            if (currentHeuristic == 0.0) {
+            else if (currentHeuristic == 0.0) {
                 this.exploredNodes = alreadyExploredNodes.size();
-                memoryUsedForSearch += GraphLayout.parseInstance(frontier).totalSize();
-                this.getStatistics().setMemoryUsedToSearch(memoryUsedForSearch);
+                this.heuristicEvaluations = heuristic.getNumberOfEvaluations();
+                PruningEngine pruning = new PruningEngine(heuristic.getPruningEngine());
+                pruning.add(heuristic.getPruningEngine());
+                if (parallelExpansion != null) {
+                    this.heuristicEvaluations += parallelExpansion.getNumberOfEvaluations();
+                    parallelExpansion.addPruningStatistics(pruning);
+                    parallelExpansion.shutdown();
+                }
+                recordPruning(pruning);
+                if (this.jolMemory)
+                    memoryUsedForSearch += GraphLayout.parseInstance(frontier).totalSize();
+                recordMemory(memoryMeter, root, this.exploredNodes + frontier.size(),
+                        alreadyExploredNodes.getMemoryUsed(), memoryUsedForSearch);
                 return this.extractPlan(current);
             }
             else{
@@ -188,35 +597,21 @@ public class MyAlgorithm extends AbstractPlanner {
                 // If the heuristic is not 0 but nonetheless is less than the smallest value found until now,
                 // we can set this value as the new best heuristic and remove from the frontier those nodes
                 // having a heuristic greater than the best. Emptying the frontier is an extreme operation, so it
-                // must be done only when all the nodes have a greater value than the best.
-                if(currentHeuristic < bestHeuristic){
+                // must be done only when all the nodes have a greater value than the best. In anytime mode, the
+                // searches after the first plan don't prune, otherwise they would follow the path of the first one
+                // and then run out of nodes: only the bound on the cost limits them.
+                if(currentHeuristic < bestHeuristic && bestSolution == null){
                     bestHeuristic = currentHeuristic;
 
-                    int capacity = 0;
-                    for(Node node : frontier)
-                        if(heuristic.estimate(node) <= bestHeuristic)
-                            capacity++;
-
-                    if(capacity == 0){
-                        frontier.clear();
-                    }
-                    else{
-                        newFrontier = new PriorityQueue<>(capacity, (n1, n2) -> {
-                            return (int)( n1.getTotalNumberOfMoveActions() - n2.getTotalNumberOfMoveActions()
-                                    - n1.getTotalNumberOfFillActions() + n2.getTotalNumberOfFillActions()
-                                    - n1.getTotalNumberOfDeliverActions() + n2.getTotalNumberOfDeliverActions()
-                                    + n1.getCost() - n2.getCost());
-                        });
-
-                        for(Node node : frontier)
-                            if(heuristic.estimate(node) <= bestHeuristic)
-                                newFrontier.add(node);
-
+                    if (this.jolMemory)
                         memoryUsedForSearch += GraphLayout.parseInstance(frontier).totalSize();
-                        frontier = newFrontier;
-                    }
+                    frontier.retainHeuristicAtMost(bestHeuristic);
                 }
 
+                // In anytime mode, the successors would not be cheaper than the best plan
+                if (current.getCost() + 1 >= bestCost)
+                    continue;
+
                 // Successors of the current node
                 ArrayList<Node> successors = new ArrayList<>();
 
@@ -225,35 +620,44 @@ public class MyAlgorithm extends AbstractPlanner {
                 LinkedList<Integer> indexesOfInsertableSuccessors = new LinkedList<>();
                 int insertableSuccessors = 0;
 
-                // Take the actions of the problem and generate the successors
-                for(Action a : problem.getActions()){
-
-                    // If the action is applicable to the current state
-                    if (a.isApplicable(current)) {
-
-                        // Generate a new state
-                        State nextState = new State(current);
+                // Take the actions applicable to the current state and generate the successors. In parallel mode
+                // they're all generated and evaluated at once, and then visited in the order of the actions
+                int[] applicableActions = successorGenerator.getApplicableActions(current);
+                Node[] parallelSuccessors = parallelExpansion != null
+                        ? parallelExpansion.expand(current, applicableActions, alreadyExploredNodes, zobrist) : null;
+
+                for(int k = 0; k < applicableActions.length; k++){
+                    Node next;
+                    if (parallelSuccessors != null) {
+                        // The already explored successors have not been evaluated
+                        next = parallelSuccessors[k];
+                        if (next == null)
+                            continue;
+                    }
+                    else {
+                        int actionIndex = applicableActions[k];
+                        Action a = problem.getActions().get(actionIndex);
 
-                        // Apply to this state the effects of the action
-                        List<ConditionalEffect> effects = a.getConditionalEffects();
-                        for (ConditionalEffect ce : effects) {
-                            if (current.satisfy(ce.getCondition())) {
-                                nextState.apply(ce.getEffect());
-                            }
-                        }
+                        // Generate a new state, applying the effects of the action to the current one
+                        State nextState = compiledEffects.apply(current, actionIndex);
 
                         // Create a new node, child to the current node, corresponding to the new state
-                        Node next = new Node(nextState, current, current.getCost() + 1, a,
-                                current.getDepth() + 1, current.getAgentFacts(),
-                                current.getCarrierFacts(), current.getBoxFacts());
-
-                        // If this node has not been already explored and its heuristic is less than
-                        // Double.MAX_VALUE, then it can be considered insertable
-                        if (!alreadyExploredNodes.contains(next) && heuristic.estimate(next) < Double.MAX_VALUE) {
-                            successors.add(next);
-                            insertableSuccessors++;
-                            indexesOfInsertableSuccessors.add(insertableSuccessors - 1);
-                        }
+                        next = new Node(nextState, current, current.getCost() + 1, a, model.getKind(actionIndex),
+                                current.getDepth() + 1);
+
+                        // If this node has not been already explored with a cost not greater than its own, compute
+                        // its heuristic
+                        next.computeFingerprint(zobrist, symmetry);
+                        if (alreadyExploredNodes.contains(next.getFingerprint(), (int) next.getCost()))
+                            continue;
+                        next.setHeuristic(heuristic.estimate(next));
+                    }
+
+                    // If the heuristic is less than Double.MAX_VALUE, the node can be considered insertable
+                    if (next.getHeuristic() < Double.MAX_VALUE) {
+                        successors.add(next);
+                        insertableSuccessors++;
+                        indexesOfInsertableSuccessors.add(insertableSuccessors - 1);
                     }
                 }
 
@@ -263,16 +667,18 @@ public class MyAlgorithm extends AbstractPlanner {
                 // successors which is added becomes less while we go further down the search tree, because while in
                 // the beginning we can cope with a non-acceptable state, further in the search it cannot happen any longer.
                 if(insertableSuccessors == 0 && current.getDepth() == 0)
-                    frontier.addAll(successors);
+                    for(Node node : successors)
+                        frontier.offer(node);
 
                 else if(insertableSuccessors == 0 && current.getDepth() > 0 && successors.size()/(current.getDepth()) > 0)
-                    frontier.addAll(successors.subList(0, successors.size()/(current.getDepth())));
+                    for(Node node : successors.subList(0, successors.size()/(current.getDepth())))
+                        frontier.offer(node);
 
                 // If instead there are insertable successors, then we add them into the frontier, ignoring
                 // those who are not insertable
                 else if(insertableSuccessors > 0){
                     for(int index : indexesOfInsertableSuccessors)
-                        frontier.add(successors.get(index));
+                        frontier.offer(successors.get(index));
                 }
 
                 // This sequence of prunings of the tree allow us to make the search quicker, without lose the
@@ -280,11 +686,294 @@ public class MyAlgorithm extends AbstractPlanner {
             }
         }
 
-        // If we arrive here, the search didn't find a solution, so we simply return null.
-        this.exploredNodes = alreadyExploredNodes.size();
-        memoryUsedForSearch += GraphLayout.parseInstance(frontier).totalSize();
-        this.getStatistics().setMemoryUsedToSearch(memoryUsedForSearch);
-        return null;
+        // If we arrive here, the search didn't find a solution, or it found some in anytime mode and ran out of
+        // nodes or time: so we return the best plan, or null
+        this.exploredNodes = previouslyExploredNodes + alreadyExploredNodes.size();
+        this.heuristicEvaluations = heuristic.getNumberOfEvaluations();
+        PruningEngine pruning = new PruningEngine(heuristic.getPruningEngine());
+        pruning.add(heuristic.getPruningEngine());
+        if (parallelExpansion != null) {
+            this.heuristicEvaluations += parallelExpansion.getNumberOfEvaluations();
+            parallelExpansion.addPruningStatistics(pruning);
+            parallelExpansion.shutdown();
+        }
+        recordPruning(pruning);
+        if (this.jolMemory)
+            memoryUsedForSearch += GraphLayout.parseInstance(frontier).totalSize();
+        recordMemory(memoryMeter, root, this.exploredNodes + frontier.size(), alreadyExploredNodes.getMemoryUsed(),
+                memoryUsedForSearch);
+        return this.extractPlan(bestSolution);
+    }
+
+    /**
+     * Do the same search as <code>My_ASTAR</code>, with the same pruning, on several threads: the states are spread
+     * among the workers by the hash of their fluents, and every worker has its own frontier and its own set of
+     * explored nodes (see <code>HdaStarSearch</code>). The plan found may differ from the one of the sequential
+     * search, since the nodes are explored in a different order.
+     *
+     * @param problem the problem to solve
+     * @return a plan for the problem
+     * @throws ProblemNotSupportedException if the problem is not supported
+     * */
+    public Plan My_HDASTAR(Problem problem) throws ProblemNotSupportedException {
+
+        // Check if the planner supports the problem
+        if (!this.isSupported(problem)) {
+            throw new ProblemNotSupportedException("Problem not supported");
+        }
+
+        MyHeuristic heuristic = createHeuristic(problem);
+        SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+        CompiledEffects compiledEffects = new CompiledEffects(problem);
+
+        Node root = createRoot(new State(problem.getInitialState()), heuristic);
+        root.setHeuristic(heuristic.estimate(root));
+
+        MemoryMeter memoryMeter = new MemoryMeter();
+        HdaStarSearch search = new HdaStarSearch(problem, successorGenerator, compiledEffects, heuristic,
+                this.threads, this.getTimeout() * 1000L, memoryMeter);
+        search.setSymmetry(createSymmetry(problem, heuristic.getModel()));
+        search.setLifoTies(this.lifoTies);
+        Node solution;
+        try {
+            solution = search.search(root);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            solution = null;
+        }
+
+        this.exploredNodes = search.getExploredNodes();
+        this.heuristicEvaluations = heuristic.getNumberOfEvaluations() + search.getHeuristicEvaluations();
+        PruningEngine pruning = new PruningEngine(heuristic.getPruningEngine());
+        pruning.add(heuristic.getPruningEngine());
+        search.addPruningStatistics(pruning);
+        recordPruning(pruning);
+        recordMemory(memoryMeter, root, this.exploredNodes + search.getFrontierNodes(),
+                search.getClosedSetsMemory(), 0);
+        return this.extractPlan(solution);
+    }
+
+    /**
+     * Split the problem among the teams of an agent and a carrier and solve them at the same time, each one with a
+     * planner with the same options as this one but <code>--decompose</code> (see <code>DecompositionPlanner</code>).
+     * The teams are solved on <code>--threads</code> threads, or on all the processors if it's 1. The number of
+     * explored nodes is the sum of the ones of the teams.
+     *
+     * @param problem the problem to solve
+     * @return the merged plan of the teams, or null if the problem can't be split or the plans can't be merged
+     * */
+    public Plan My_DECOMPOSED(Problem problem) {
+        if (this.getDomainFile() == null) {
+            LOGGER.info("* No domain file to write the problems of the teams, searching the whole problem\n");
+            return null;
+        }
+        final int threads = this.threads > 1 ? this.threads : Runtime.getRuntime().availableProcessors();
+        Plan plan;
+        try {
+            DecompositionPlanner planner = new DecompositionPlanner(this.getDomainFile(), this::createTeamPlanner,
+                    threads);
+            plan = planner.solve(problem);
+            if (plan == null) {
+                LOGGER.info("* Problem not decomposed: " + planner.getFailure() + ", searching the whole problem\n");
+                return null;
+            }
+            this.exploredNodes = planner.getExploredNodes();
+            this.heuristicEvaluations = planner.getHeuristicEvaluations();
+            LOGGER.info("* Problem decomposed among the teams:\n" + planner.describe(problem));
+        }
+        catch (IOException e) {
+            LOGGER.warn("Cannot decompose the problem: " + e.getMessage() + "\n");
+            return null;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        return plan;
+    }
+
+    /**
+     * Creates the planner of a team of <code>My_DECOMPOSED</code>: it has the same options as this one, but it
+     * doesn't decompose and it searches on a single thread, since the teams are already solved at the same time
+     * */
+    private MyAlgorithm createTeamPlanner() {
+        MyAlgorithm planner = new MyAlgorithm();
+        planner.setTimeout(this.getTimeout());
+        planner.incrementalHeuristic = this.incrementalHeuristic;
+        planner.bitsetKernel = this.bitsetKernel;
+        planner.threads = 1;
+        planner.jolMemory = this.jolMemory;
+        planner.anytime = this.anytime;
+        planner.symmetry = this.symmetry;
+        planner.idaStar = this.idaStar;
+        planner.idaWeight = this.idaWeight;
+        planner.idaTable = this.idaTable;
+        planner.beamWidth = this.beamWidth;
+        planner.beamWindow = this.beamWindow;
+        planner.beamMemory = this.beamMemory;
+        planner.landmarks = this.landmarks;
+        planner.lifoTies = this.lifoTies;
+        return planner;
+    }
+
+    /**
+     * Do an iterative deepening A* search, with the heuristic and the pruning rules of <code>My_ASTAR</code> (see
+     * <code>IdaStarSearch</code>). The number of explored nodes is the number of nodes expanded over all the
+     * iterations.
+     *
+     * @param problem the problem to solve
+     * @return a plan for the problem, or null if there is none or the time is over
+     * @throws ProblemNotSupportedException if the problem is not supported
+     * */
+    public Plan My_IDASTAR(Problem problem) throws ProblemNotSupportedException {
+
+        // Check if the planner supports the problem
+        if (!this.isSupported(problem)) {
+            throw new ProblemNotSupportedException("Problem not supported");
+        }
+
+        // The incremental heuristic keeps the graph of the last parent, recognized by the object, and the search
+        // reuses the same object for all the nodes of a depth
+        MyHeuristic heuristic = createHeuristic(problem);
+        heuristic.setIncremental(false);
+        SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+        CompiledEffects compiledEffects = new CompiledEffects(problem);
+
+        Node root = createRoot(new State(problem.getInitialState()), heuristic);
+        root.setHeuristic(heuristic.estimate(root));
+
+        MemoryMeter memoryMeter = new MemoryMeter();
+        IdaStarSearch search = new IdaStarSearch(problem, successorGenerator, compiledEffects, heuristic,
+                this.idaWeight, this.idaTable, this.getTimeout() * 1000L);
+        search.setSymmetry(createSymmetry(problem, heuristic.getModel()));
+        Node solution = search.search(root);
+        LOGGER.info("* " + search.getIterations() + " iterations, last bound " + search.getBound()
+                + ", greatest depth " + search.getMaxDepth() + "\n");
+
+        this.exploredNodes = (int) Long.min(Integer.MAX_VALUE, search.getExpandedNodes());
+        this.heuristicEvaluations = heuristic.getNumberOfEvaluations();
+        PruningEngine pruning = new PruningEngine(heuristic.getPruningEngine());
+        pruning.add(heuristic.getPruningEngine());
+        recordPruning(pruning);
+        recordMemory(memoryMeter, root, search.getMaxDepth() + 1, search.getTableMemory(), 0);
+        return this.extractPlan(solution);
+    }
+
+    /**
+     * Do a beam search, keeping at every depth the best <code>beamWidth</code> successors by heuristic and then by the
+     * priority of <code>My_ASTAR</code>, with the same pruning rules (see <code>BeamSearch</code>). The number of
+     * explored nodes is the number of nodes expanded.
+     *
+     * @param problem the problem to solve
+     * @return a plan for the problem, or null if the beam runs out of nodes
+     * @throws ProblemNotSupportedException if the problem is not supported
+     * */
+    public Plan My_BEAM(Problem problem) throws ProblemNotSupportedException {
+
+        // Check if the planner supports the problem
+        if (!this.isSupported(problem)) {
+            throw new ProblemNotSupportedException("Problem not supported");
+        }
+
+        MyHeuristic heuristic = createHeuristic(problem);
+        SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+        CompiledEffects compiledEffects = new CompiledEffects(problem);
+
+        Node root = createRoot(new State(problem.getInitialState()), heuristic);
+        root.setHeuristic(heuristic.estimate(root));
+
+        MemoryMeter memoryMeter = new MemoryMeter();
+        BeamSearch search = new BeamSearch(problem, successorGenerator, compiledEffects, heuristic, this.beamWidth,
+                this.beamWindow, this.beamMemory * 1024L * 1024L, this.getTimeout() * 1000L);
+        search.setSymmetry(createSymmetry(problem, heuristic.getModel()));
+        Node solution = search.search(root);
+        if (search.getWidth() < this.beamWidth)
+            LOGGER.info("* Width of the beam reduced to " + search.getWidth() + " by the memory ceiling\n");
+
+        this.exploredNodes = search.getExpandedNodes();
+        this.heuristicEvaluations = heuristic.getNumberOfEvaluations();
+        PruningEngine pruning = new PruningEngine(heuristic.getPruningEngine());
+        pruning.add(heuristic.getPruningEngine());
+        recordPruning(pruning);
+        recordMemory(memoryMeter, root, search.getRetainedNodes(), search.getClosedSetsMemory(), 0);
+        return this.extractPlan(solution);
+    }
+
+    /**
+     * Sets the memory used by the search in the statistics, and logs the bytes allocated during the search and the
+     * peak of the heap of the JVM, which the solves running at the same time share. The memory used is the one
+     * measured with JOL, if it's asked, or else the estimate of the memory taken by the nodes plus the one of the set
+     * of the explored states.
+     *
+     * @param memoryMeter the meter started with the search
+     * @param root the root node, whose state has the size of all the states
+     * @param nodes the number of nodes still reachable at the end of the search: the explored ones and the ones in
+     *              the frontier
+     * @param closedSetBytes the memory taken by the set of the explored states
+     * @param jolBytes the memory measured with JOL
+     * */
+    private void recordMemory(MemoryMeter memoryMeter, Node root, long nodes, long closedSetBytes, long jolBytes) {
+        long memoryUsed = this.jolMemory ? jolBytes : MemoryMeter.estimateNodes(nodes, root) + closedSetBytes;
+        this.getStatistics().setMemoryUsedToSearch(memoryUsed);
+        LOGGER.info(String.format("* Search allocated %.2f MBytes, JVM heap peaked at %.2f MBytes\n",
+                memoryMeter.getAllocatedBytes() / (1024.0 * 1024.0),
+                memoryMeter.getPeakHeapBytes() / (1024.0 * 1024.0)));
+    }
+
+    /**
+     * Keeps the statistics of the pruning rules of the last search, summed over all the copies of the heuristic, and
+     * logs them
+     * */
+    private void recordPruning(PruningEngine pruning) {
+        this.pruningStatistics = pruning;
+        LOGGER.info("* Pruning rules, cheapest first:\n" + pruning.report());
+    }
+
+    /**
+     * Creates the heuristic used in the search, counting the landmarks or expanding the relaxed planning graph as
+     * chosen by the options
+     * */
+    private MyHeuristic createHeuristic(Problem problem) {
+        MyHeuristic heuristic = new MyHeuristic(problem);
+        heuristic.setIncremental(this.incrementalHeuristic);
+        if (this.bitsetKernel != null) {
+            BitsetKernel kernel = BitsetKernel.create(this.bitsetKernel);
+            heuristic.setBitsetKernel(kernel);
+            LOGGER.info("* Relaxed planning graph expanded on bitsets by the " + kernel + " kernel\n");
+        }
+        if (this.landmarks) {
+            try {
+                LandmarkHeuristic landmarks = new LandmarkHeuristic(problem, heuristic.getModel());
+                heuristic.setLandmarks(landmarks);
+                LOGGER.info("* Landmarks: " + landmarks.describe() + "\n");
+            }
+            catch (IllegalArgumentException e) {
+                LOGGER.info("* No landmarks: " + e.getMessage() + ", expanding the relaxed planning graph\n");
+            }
+        }
+        return heuristic;
+    }
+
+    /**
+     * Finds the symmetries between the objects of the problem, if the symmetric states are explored once, or else
+     * returns null
+     * */
+    private Symmetry createSymmetry(Problem problem, DomainModel model) {
+        if (!this.symmetry)
+            return null;
+        Symmetry symmetry = new Symmetry(problem, model);
+        LOGGER.info("* " + symmetry.getNumberOfGroups() + " groups of interchangeable objects: "
+                + symmetry.describe(problem) + "\n");
+        return symmetry;
+    }
+
+    /**
+     * Creates the root node of the search, tracking the actions of all the agents, carriers and boxes of the problem
+     * */
+    private Node createRoot(State init, MyHeuristic heuristic) {
+        DomainModel model = heuristic.getModel();
+        return new Node(init, model.getAgents(), model.getCarriers(), model.getBoxes());
     }
 
     /**
@@ -327,7 +1016,8 @@ public class MyAlgorithm extends AbstractPlanner {
         CommandLine cmd = new CommandLine(planner);
         cmd.execute(args);
 
-        LOGGER.info(String.format("number of explored nodes:  %d\n\n", planner.getExploredNodes()));
+        LOGGER.info(String.format("number of explored nodes:  %d\n", planner.getExploredNodes()));
+        LOGGER.info(String.format("number of heuristic evaluations:  %d\n\n", planner.getHeuristicEvaluations()));
     }
 
 }
\ No newline at end of file
@@ -11,7 +11,8 @@ import java.util.*;
 /**
  * Class that provides a method for computing the heuristic and memorizes a complete mapping of the object
  * of the problem, useful to determine the heuristic of a node. The heuristic is computed by verifying a series of
- * properties that a good plan should have: if at least one of these is not verified, the node is assigned a
+ * properties that a good plan should have, the rules of <code>PruningEngine</code>: if at least one of these is not
+ * verified, the node is assigned a
  * heuristic value equal to <code>Double.MAX_VALUE</code>; otherwise it uses the value provided by the SUM
  * heuristic, which leverages a relaxed version of the graph that does not take into account the negative effects
  * of the actions: even if it isn't an admissible heuristic, this does not have any negative consequences on the
@@ -36,8 +37,6 @@ public class MyHeuristic {
 
     private int[] precondCounters;
 
-    private int[] operatorsDifficulty;
-
     private int[] pPropLevel;
 
     private int[] nPropLevel;
@@ -58,163 +57,117 @@ public class MyHeuristic {
 
     private int level;
 
-    private Problem problem;
-
     /**
-     * Mapping between the type of the objects and the objects actually involved in the problem.
-     * The objects are identified by an integer value that corresponds to the order by which they are declared
-     * in the field <code>(:objects)</code> of the .pddl file that contains the problem. So that order is kept in
-     * this mapping, thanks to which it's possible to access information like the number of object of a certain type
-     * and the object associated to a certain identifier.
+     * The relaxed planning graph is explored through these arrays, computed once in the constructor: for each
+     * fluent, the operators having it as a positive (negative) precondition; for each operator, the fluents it makes
+     * true (false); the operators without preconditions; the positive (negative) goals. Only the fluents that can
+     * change the result are considered on the negative side: the ones that are a negative precondition or a negative
+     * goal.
      * */
-    private HashMap<String, TreeSet<Integer>> mapping;
-
-    public MyHeuristic(Problem problem) {
-
-        // The problem to solve
-        this.problem = problem;
-
-        // The fluents, i.e. the predicates that change value during the search
-        this.facts = problem.getFluents();
-
-        // The goal to achieve
-        this.goal = problem.getGoal();
-
-        // The actions of the problem
-        this.actions = problem.getActions();
-
-        // The mapping <object_type, list_of_object_of_that_type>
-        this.mapping = new HashMap<>();
-
-        // For each action of the problem, we take the involved objects and insert them into the mapping.
-        // Each action has an order by which the parameters are passed: following that order for each action,
-        // it's possible to collect every object of a certain type involved in the problem. Thanks to the mapping,
-        // it's possible to access information like the number of objects of a certain type and the object
-        // associated to a certain identifier.
-        for(Action ac : this.actions){
-
-            // Take the identifiers of the objects involved in the action
-            int[] instantiations = ac.getInstantiations();
-
-            // Register these objects inside the mapping according to the type of the action
-            switch (ac.getName().toLowerCase()){
-                case "move_agent":
-                    if(!mapping.containsKey("agent"))
-                        mapping.put("agent", new TreeSet<>());
-
-                    mapping.get("agent").add(instantiations[0]);
-
-                    if(!mapping.containsKey("location"))
-                        mapping.put("location", new TreeSet<>());
+    private int[][] pPrecondOperators;
 
-                    mapping.get("location").add(instantiations[1]);
-                    mapping.get("location").add(instantiations[2]);
+    private int[][] nPrecondOperators;
 
-                    break;
+    private int[][] pEffectFluents;
 
-                case "move_agent_and_carrier":
-                    if(!mapping.containsKey("agent"))
-                        mapping.put("agent", new TreeSet<>());
+    private int[][] nEffectFluents;
 
-                    mapping.get("agent").add(instantiations[0]);
+    private int[] operatorsWithoutPrecond;
 
-                    if(!mapping.containsKey("carrier"))
-                        mapping.put("carrier", new TreeSet<>());
+    private int[] pGoalFluents;
 
-                    mapping.get("carrier").add(instantiations[1]);
+    private int[] nGoalFluents;
 
-                    if(!mapping.containsKey("location"))
-                        mapping.put("location", new TreeSet<>());
+    private boolean[] isPGoal;
 
-                    mapping.get("location").add(instantiations[2]);
-                    mapping.get("location").add(instantiations[3]);
+    private boolean[] isNGoal;
 
-                    break;
+    private int[] nRelevantFluents;
 
-                case "fill_box_and_load_it_on_carrier":
-                    if(!mapping.containsKey("agent"))
-                        mapping.put("agent", new TreeSet<>());
-
-                    mapping.get("agent").add(instantiations[0]);
-
-                    if(!mapping.containsKey("carrier"))
-                        mapping.put("carrier", new TreeSet<>());
-
-                    mapping.get("carrier").add(instantiations[1]);
-
-                    if(!mapping.containsKey("box"))
-                        mapping.put("box", new TreeSet<>());
-
-                    mapping.get("box").add(instantiations[2]);
-
-                    if(!mapping.containsKey("box_place"))
-                        mapping.put("box_place", new TreeSet<>());
-
-                    mapping.get("box_place").add(instantiations[3]);
-
-                    if(!mapping.containsKey("content"))
-                        mapping.put("content", new TreeSet<>());
-
-                    mapping.get("content").add(instantiations[4]);
-
-                    break;
+    /**
+     * Scratch arrays reused by every expansion of the relaxed planning graph: the fluents reached so far, in the
+     * order of their level, the operators triggered by the current level and the operators whose counter has been
+     * incremented. They're also the list of the entries of <code>pPropLevel</code>, <code>nPropLevel</code>,
+     * <code>operatorsLevel</code> and <code>precondCounters</code> that have to be reset before the next expansion.
+     * */
+    private int[] pReached;
 
-                case "unload_box_deliver_its_content_and_reload_it_on_carrier":
-                    if(!mapping.containsKey("agent"))
-                        mapping.put("agent", new TreeSet<>());
+    private int nbPReached;
 
-                    mapping.get("agent").add(instantiations[0]);
+    private int[] nReached;
 
-                    if(!mapping.containsKey("carrier"))
-                        mapping.put("carrier", new TreeSet<>());
+    private int nbNReached;
 
-                    mapping.get("carrier").add(instantiations[1]);
+    private int[] newOperators;
 
-                    if(!mapping.containsKey("box"))
-                        mapping.put("box", new TreeSet<>());
+    private int[] touchedOperators;
 
-                    mapping.get("box").add(instantiations[2]);
+    private int nbTouchedOperators;
 
-                    if(!mapping.containsKey("content"))
-                        mapping.put("content", new TreeSet<>());
+    /**
+     * The relaxed planning graph used to evaluate the successors of a node from the graph of the node itself, and
+     * the node whose graph it currently holds
+     * */
+    private IncrementalRelaxedGraph incrementalGraph;
 
-                    mapping.get("content").add(instantiations[3]);
+    private Node anchor;
 
-                    if(!mapping.containsKey("person"))
-                        mapping.put("person", new TreeSet<>());
+    /**
+     * True if the successors are evaluated from the graph of their parent, false if every node is evaluated from
+     * scratch
+     * */
+    private boolean incremental;
 
-                    mapping.get("person").add(instantiations[4]);
+    /**
+     * The relaxed planning graph computed on bitsets, or null if the graph is expanded one fluent at a time
+     * */
+    private BitsetRelaxedGraph bitsetGraph;
 
-                    if(!mapping.containsKey("location"))
-                        mapping.put("location", new TreeSet<>());
+    /**
+     * The landmarks of the problem, whose count replaces the SUM value, or null if the relaxed planning graph is used
+     * */
+    private LandmarkHeuristic landmarks;
 
-                    mapping.get("location").add(instantiations[5]);
+    private Problem problem;
 
-                    break;
+    /**
+     * Number of times the heuristic has been computed
+     * */
+    private long evaluations;
 
-                case "unload_empty_box_from_carrier":
-                    if(!mapping.containsKey("agent"))
-                        mapping.put("agent", new TreeSet<>());
+    /**
+     * The model of the domain compiled for the problem: the kind of every action and the objects of every type
+     * actually involved in the problem. The objects are identified by an integer value that corresponds to the order
+     * by which they are declared in the field <code>(:objects)</code> of the .pddl file that contains the problem, and
+     * they're kept in that order, thanks to which it's possible to access information like the number of object of a
+     * certain type and the object associated to a certain identifier.
+     * */
+    private DomainModel model;
 
-                    mapping.get("agent").add(instantiations[0]);
+    /**
+     * The rules checked on a node before expanding its relaxed planning graph (see <code>PruningEngine</code>)
+     * */
+    private PruningEngine pruningEngine;
 
-                    if(!mapping.containsKey("carrier"))
-                        mapping.put("carrier", new TreeSet<>());
+    public MyHeuristic(Problem problem) {
 
-                    mapping.get("carrier").add(instantiations[1]);
+        // The problem to solve
+        this.problem = problem;
 
-                    if(!mapping.containsKey("box"))
-                        mapping.put("box", new TreeSet<>());
+        // The fluents, i.e. the predicates that change value during the search
+        this.facts = problem.getFluents();
 
-                    mapping.get("box").add(instantiations[2]);
+        // The goal to achieve
+        this.goal = problem.getGoal();
 
-                    if(!mapping.containsKey("box_place"))
-                        mapping.put("box_place", new TreeSet<>());
+        // The actions of the problem
+        this.actions = problem.getActions();
 
-                    mapping.get("box_place").add(instantiations[3]);
-                    break;
-            }
-        }
+        // The kinds of the actions and the objects of every type, compiled once from the names of the actions and
+        // of the types, or read with the problem from the grounding cache: the search and the heuristic never look at
+        // the names again
+        this.model = DomainModel.of(problem);
+        this.pruningEngine = PruningEngine.createDefault(this.model);
 
         final int nbRelevantFacts = facts.size();
 
@@ -233,8 +186,6 @@ public class MyHeuristic {
 
         this.operatorsLevel = new int[nbUncondOperators];
 
-        this.operatorsDifficulty = new int[nbUncondOperators];
-
         this.precondCounters = new int[nbUncondOperators];
 
         this.preconditions = new Condition[nbUncondOperators];
@@ -320,79 +271,245 @@ public class MyHeuristic {
                 }
             }
         }
+
+        // Flatten the edges of the graph into arrays of indexes. The operators without preconditions are kept
+        // apart: they're triggered at the first level, whatever the state is.
+        final BitVector emptyPrecond = new BitVector();
+        for (int i = 0; i < nbUncondOperators; i++)
+            if (this.preconditions[i].isEmpty())
+                emptyPrecond.set(i);
+        this.operatorsWithoutPrecond = toArray(emptyPrecond);
+
+        this.isPGoal = new boolean[nbRelevantFacts];
+        this.isNGoal = new boolean[nbRelevantFacts];
+        this.pGoalFluents = toArray(goal.getPositiveFluents());
+        this.nGoalFluents = toArray(goal.getNegativeFluents());
+        for (int g : this.pGoalFluents)
+            this.isPGoal[g] = true;
+        for (int g : this.nGoalFluents)
+            this.isNGoal[g] = true;
+
+        this.pPrecondOperators = new int[nbRelevantFacts][];
+        this.nPrecondOperators = new int[nbRelevantFacts][];
+        final BitVector nRelevant = new BitVector();
+        for (int p = 0; p < nbRelevantFacts; p++) {
+            final BitVector pEdges = new BitVector(this.precondEdges[p].getPositiveFluents());
+            final BitVector nEdges = new BitVector(this.precondEdges[p].getNegativeFluents());
+            pEdges.andNot(emptyPrecond);
+            nEdges.andNot(emptyPrecond);
+            this.pPrecondOperators[p] = toArray(pEdges);
+            this.nPrecondOperators[p] = toArray(nEdges);
+            if (this.nPrecondOperators[p].length > 0 || this.isNGoal[p])
+                nRelevant.set(p);
+        }
+        this.nRelevantFluents = toArray(nRelevant);
+
+        this.pEffectFluents = new int[nbUncondOperators][];
+        this.nEffectFluents = new int[nbUncondOperators][];
+        for (int o = 0; o < nbUncondOperators; o++) {
+            final BitVector nEff = new BitVector(this.effects[o].getNegativeFluents());
+            nEff.and(nRelevant);
+            this.pEffectFluents[o] = toArray(this.effects[o].getPositiveFluents());
+            this.nEffectFluents[o] = toArray(nEff);
+        }
+
+        // The scratch arrays are sized once: every fluent is reached at most once per expansion, and every operator
+        // is triggered at most once
+        this.pReached = new int[nbRelevantFacts];
+        this.nReached = new int[nbRelevantFacts];
+        this.newOperators = new int[nbUncondOperators];
+        this.touchedOperators = new int[nbUncondOperators];
+        Arrays.fill(this.pPropLevel, Integer.MAX_VALUE);
+        Arrays.fill(this.nPropLevel, Integer.MAX_VALUE);
+        Arrays.fill(this.operatorsLevel, Integer.MAX_VALUE);
+
+        this.incrementalGraph = new IncrementalRelaxedGraph(nbRelevantFacts, this.pPrecondOperators,
+                this.nPrecondOperators, this.pEffectFluents, this.nEffectFluents, this.effectsEdges,
+                this.preconditions, this.pGoalFluents, this.nGoalFluents, this.nRelevantFluents);
+        this.anchor = null;
+        this.incremental = false;
+    }
+
+    /**
+     * Creates a heuristic for the same problem as <code>other</code>. All the tables computed from the problem are
+     * shared, since they're never modified after the constructor, while the scratch arrays used to expand the relaxed
+     * planning graph are new: the two heuristics can be used at the same time by different threads, and they give
+     * the same values.
+     * */
+    public MyHeuristic(MyHeuristic other) {
+        this.problem = other.problem;
+        this.facts = other.facts;
+        this.goal = other.goal;
+        this.actions = other.actions;
+        this.model = other.model;
+        this.pruningEngine = new PruningEngine(other.pruningEngine);
+        this.isAdmissible = other.isAdmissible;
+
+        this.unconditionalOperators = other.unconditionalOperators;
+        this.precondCardinality = other.precondCardinality;
+        this.precondEdges = other.precondEdges;
+        this.effectsEdges = other.effectsEdges;
+        this.preconditions = other.preconditions;
+        this.effects = other.effects;
+        this.unconditionalEffects = other.unconditionalEffects;
+        this.goalCardinality = other.goalCardinality;
+        this.pPrecondOperators = other.pPrecondOperators;
+        this.nPrecondOperators = other.nPrecondOperators;
+        this.pEffectFluents = other.pEffectFluents;
+        this.nEffectFluents = other.nEffectFluents;
+        this.operatorsWithoutPrecond = other.operatorsWithoutPrecond;
+        this.pGoalFluents = other.pGoalFluents;
+        this.nGoalFluents = other.nGoalFluents;
+        this.isPGoal = other.isPGoal;
+        this.isNGoal = other.isNGoal;
+        this.nRelevantFluents = other.nRelevantFluents;
+
+        this.pPropLevel = new int[other.pPropLevel.length];
+        this.nPropLevel = new int[other.nPropLevel.length];
+        this.operatorsLevel = new int[other.operatorsLevel.length];
+        this.precondCounters = new int[other.precondCounters.length];
+        this.pReached = new int[other.pReached.length];
+        this.nReached = new int[other.nReached.length];
+        this.newOperators = new int[other.newOperators.length];
+        this.touchedOperators = new int[other.touchedOperators.length];
+        Arrays.fill(this.pPropLevel, Integer.MAX_VALUE);
+        Arrays.fill(this.nPropLevel, Integer.MAX_VALUE);
+        Arrays.fill(this.operatorsLevel, Integer.MAX_VALUE);
+
+        this.incrementalGraph = new IncrementalRelaxedGraph(other.incrementalGraph);
+        this.anchor = null;
+        this.incremental = other.incremental;
+        this.bitsetGraph = other.bitsetGraph == null ? null : new BitsetRelaxedGraph(other.bitsetGraph);
+        this.landmarks = other.landmarks;
+        this.evaluations = 0;
+    }
+
+    /**
+     * Returns the indexes of the bits set in <code>bits</code>, in increasing order
+     * */
+    private static int[] toArray(BitVector bits) {
+        int[] array = new int[bits.cardinality()];
+        int i = 0;
+        for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1))
+            array[i++] = p;
+        return array;
+    }
+
+    /**
+     * Returns the model of the domain compiled for the problem
+     * */
+    public DomainModel getModel() {
+        return this.model;
+    }
+
+    /**
+     * Returns the engine of the pruning rules, with the statistics of the nodes evaluated by this heuristic
+     * */
+    public PruningEngine getPruningEngine() {
+        return this.pruningEngine;
     }
 
     public int getNumAgents(){
-        return mapping.get("agent").size();
+        return model.getAgents().length;
     }
 
     public int getAgentAtIndex(int i){
-        Integer[] agents = new Integer[getNumAgents()];
-        return mapping.get("agent").toArray(agents)[i];
+        return model.getAgents()[i];
     }
 
     public int getNumCarriers(){
-        return mapping.get("carrier").size();
+        return model.getCarriers().length;
     }
 
     public int getCarrierAtIndex(int i){
-        Integer[] carriers = new Integer[getNumCarriers()];
-        return mapping.get("carrier").toArray(carriers)[i];
+        return model.getCarriers()[i];
     }
 
     public int getNumBoxes(){
-        return mapping.get("box").size();
+        return model.getBoxes().length;
     }
 
     public int getBoxAtIndex(int i){
-        Integer[] boxes = new Integer[getNumBoxes()];
-        return mapping.get("box").toArray(boxes)[i];
+        return model.getBoxes()[i];
     }
 
     public int getNumBoxPlaces(){
-        return mapping.get("box_place").size();
+        return model.getBoxPlaces().length;
     }
 
     public int getBoxPlaceAtIndex(int i){
-        Integer[] box_places = new Integer[getNumBoxPlaces()];
-        return mapping.get("box_place").toArray(box_places)[i];
+        return model.getBoxPlaces()[i];
     }
 
     public int getNumLocations(){
-        return mapping.get("location").size();
+        return model.getLocations().length;
     }
 
     public int getLocationAtIndex(int i){
-        Integer[] locations = new Integer[getNumLocations()];
-        return mapping.get("location").toArray(locations)[i];
+        return model.getLocations()[i];
     }
 
     public int getNumContents(){
-        return mapping.get("content").size();
+        return model.getContents().length;
     }
 
     public int getContentAtIndex(int i){
-        Integer[] contents = new Integer[getNumContents()];
-        return mapping.get("content").toArray(contents)[i];
+        return model.getContents()[i];
     }
 
     public int getNumPeople(){
-        return mapping.get("person").size();
+        return model.getPeople().length;
     }
 
     public int getPersonAtIndex(int i){
-        Integer[] people = new Integer[getNumPeople()];
-        return mapping.get("person").toArray(people)[i];
+        return model.getPeople()[i];
     }
 
     public String getTypeOfParameter(int x){
-        for(String type: mapping.keySet())
-            if(mapping.get(type).contains(x))
-                return type;
-        return null;
+        int type = model.getType(x);
+        return type >= 0 ? DomainModel.getTypeName(type) : null;
     }
 
 
+    /**
+     * Returns the number of times <code>estimate</code> has been called
+     * */
+    public long getNumberOfEvaluations() {
+        return this.evaluations;
+    }
+
+    /**
+     * Chooses whether the successors are evaluated from the relaxed planning graph of their parent or from scratch
+     * (the default). Both ways give the same values: updating the graph of the parent pays off when the fluents that
+     * depend on the changed ones are few, while in this domain a change in the position of an agent reaches most of
+     * the operators of that agent, and a search is 2 to 2.6 times slower.
+     * */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        this.anchor = null;
+    }
+
+    /**
+     * Chooses whether the relaxed planning graph is expanded on bitsets, with the operations on the words done by
+     * <code>kernel</code>, or one fluent at a time (the default, with <code>kernel</code> null). Both ways give the
+     * same values.
+     * */
+    public void setBitsetKernel(BitsetKernel kernel) {
+        this.bitsetGraph = kernel == null ? null : new BitsetRelaxedGraph(kernel, this.pPrecondOperators.length,
+                this.pPrecondOperators, this.nPrecondOperators, this.pEffectFluents, this.nEffectFluents,
+                this.preconditions, this.operatorsWithoutPrecond, this.pGoalFluents, this.nGoalFluents,
+                this.nRelevantFluents);
+    }
+
+    /**
+     * Chooses whether the value of a node is the count of the landmarks it still has to achieve (see
+     * <code>LandmarkHeuristic</code>) or, with <code>landmarks</code> null, the SUM value of the relaxed planning
+     * graph (the default). The pruning rules are checked first in both cases.
+     * */
+    public void setLandmarks(LandmarkHeuristic landmarks) {
+        this.landmarks = landmarks;
+    }
+
     public boolean isAdmissible() {
         return this.isAdmissible;
     }
@@ -405,137 +522,122 @@ public class MyHeuristic {
         return this.actions;
     }
 
+    /**
+     * Expands the relaxed planning graph from <code>state</code>, level by level, until all the goals are reached or
+     * no new fluent can be reached. At the end <code>pPropLevel</code> and <code>nPropLevel</code> contain the level
+     * at which every reached fluent becomes true (false). No object is allocated: the arrays filled by the previous
+     * expansion are reset by visiting only the entries it touched.
+     * */
     private int expandRelaxedPlanningGraph(State state) {
 
-        Arrays.fill(this.operatorsLevel, Integer.MAX_VALUE);
-
-        Arrays.fill(this.pPropLevel, Integer.MAX_VALUE);
-
-        Arrays.fill(this.nPropLevel, Integer.MAX_VALUE);
-
-        Arrays.fill(this.precondCounters, 0);
-
-        Arrays.fill(this.operatorsDifficulty, Integer.MAX_VALUE);
-
-        final BitVector pGoal = goal.getPositiveFluents();
-
-        final BitVector nGoal = goal.getNegativeFluents();
+        // Reset the entries touched by the previous expansion
+        for (int i = 0; i < this.nbPReached; i++)
+            this.pPropLevel[this.pReached[i]] = Integer.MAX_VALUE;
+        for (int i = 0; i < this.nbNReached; i++)
+            this.nPropLevel[this.nReached[i]] = Integer.MAX_VALUE;
+        for (int i = 0; i < this.nbTouchedOperators; i++) {
+            this.precondCounters[this.touchedOperators[i]] = 0;
+            this.operatorsLevel[this.touchedOperators[i]] = Integer.MAX_VALUE;
+        }
+        this.nbPReached = 0;
+        this.nbNReached = 0;
+        this.nbTouchedOperators = 0;
 
         this.goalCounter = 0;
 
         this.level = 0;
 
-        BitVector ppk = new BitVector(state);
-
-        BitVector npk = new BitVector();
-        npk.flip(0, facts.size());
-        npk.andNot(state);
-
-        for (int p = ppk.nextSetBit(0); p >= 0; p = ppk.nextSetBit(p + 1)) {
+        // The fluents true in the state are at level 0
+        for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1)) {
             this.pPropLevel[p] = 0;
-            if (pGoal.get(p)) {
+            this.pReached[this.nbPReached++] = p;
+            if (this.isPGoal[p]) {
                 this.goalCounter++;
             }
         }
 
-        for (int p = npk.nextSetBit(0); p >= 0; p = npk.nextSetBit(p + 1)) {
-            this.nPropLevel[p] = 0;
-            if (nGoal.get(p)) {
-                this.goalCounter++;
+        // And so are the fluents false in the state
+        for (int p : this.nRelevantFluents) {
+            if (!state.get(p)) {
+                this.nPropLevel[p] = 0;
+                this.nReached[this.nbNReached++] = p;
+                if (this.isNGoal[p]) {
+                    this.goalCounter++;
+                }
             }
         }
 
-        final BitVector pAcc = new BitVector();
-
-        final BitVector nAcc = new BitVector();
+        // The fluents of the current level are in pReached[pFirst, pLast) and nReached[nFirst, nLast)
+        int pFirst = 0;
+        int nFirst = 0;
 
-        while (this.goalCounter != this.goalCardinality && (!ppk.isEmpty() || !npk.isEmpty())) {
+        while (this.goalCounter != this.goalCardinality
+                && (this.level == 0 || pFirst < this.nbPReached || nFirst < this.nbNReached)) {
 
-            final BitVector newOps = new BitVector();
+            final int pLast = this.nbPReached;
+            final int nLast = this.nbNReached;
+            int nbNewOperators = 0;
 
-            for (int p = ppk.nextSetBit(0); p >= 0; p = ppk.nextSetBit(p + 1)) {
-
-                final BitVector pEdges = this.precondEdges[p].getPositiveFluents();
-
-                pAcc.set(p);
-
-                for (int pe = pEdges.nextSetBit(0); pe >= 0; pe = pEdges.nextSetBit(pe + 1)) {
+            if (this.level == 0) {
+                for (int o : this.operatorsWithoutPrecond) {
+                    this.newOperators[nbNewOperators++] = o;
+                    this.touchedOperators[this.nbTouchedOperators++] = o;
+                }
+            }
 
-                    if (this.precondCardinality[pe] != 0) {
-                        this.precondCounters[pe]++;
+            for (int i = pFirst; i < pLast; i++) {
+                for (int pe : this.pPrecondOperators[this.pReached[i]]) {
+                    if (this.precondCounters[pe]++ == 0) {
+                        this.touchedOperators[this.nbTouchedOperators++] = pe;
                     }
-
                     if (this.precondCounters[pe] == this.precondCardinality[pe]) {
-                        newOps.set(pe);
+                        this.newOperators[nbNewOperators++] = pe;
                     }
                 }
             }
 
-            for (int p = npk.nextSetBit(0); p >= 0; p = npk.nextSetBit(p + 1)) {
-
-                final BitVector nEdges = this.precondEdges[p].getNegativeFluents();
-
-                nAcc.set(p);
-
-                for (int pe = nEdges.nextSetBit(0); pe >= 0; pe = nEdges.nextSetBit(pe + 1)) {
-
-                    if (this.precondCardinality[pe] != 0) {
-                        this.precondCounters[pe]++;
+            for (int i = nFirst; i < nLast; i++) {
+                for (int pe : this.nPrecondOperators[this.nReached[i]]) {
+                    if (this.precondCounters[pe]++ == 0) {
+                        this.touchedOperators[this.nbTouchedOperators++] = pe;
                     }
-
                     if (this.precondCounters[pe] == this.precondCardinality[pe]) {
-                        newOps.set(pe);
+                        this.newOperators[nbNewOperators++] = pe;
                     }
                 }
             }
 
-            final BitVector pNewProps = new BitVector();
-
-            final BitVector nNewProps = new BitVector();
-
-            for (int o = newOps.nextSetBit(0); o >= 0; o = newOps.nextSetBit(o + 1)) {
+            // The effects of the operators triggered at this level are reached at the next one
+            for (int k = 0; k < nbNewOperators; k++) {
+                final int o = this.newOperators[k];
 
                 this.operatorsLevel[o] = this.level;
 
-                pNewProps.or(this.effects[o].getPositiveFluents());
-
-                nNewProps.or(this.effects[o].getNegativeFluents());
-
-                this.operatorsDifficulty[o] = 0;
-
-                final BitVector pPre = this.preconditions[o].getPositiveFluents();
-                for (int p = pPre.nextSetBit(0); p >= 0; p = pPre.nextSetBit(p + 1)) {
-                    this.operatorsDifficulty[o] += this.pPropLevel[p];
+                for (int p : this.pEffectFluents[o]) {
+                    if (this.pPropLevel[p] == Integer.MAX_VALUE) {
+                        this.pPropLevel[p] = this.level + 1;
+                        this.pReached[this.nbPReached++] = p;
+                        if (this.isPGoal[p]) {
+                            this.goalCounter++;
+                        }
+                    }
                 }
 
-                final BitVector nPre = this.preconditions[o].getNegativeFluents();
-                for (int p = nPre.nextSetBit(0); p >= 0; p = nPre.nextSetBit(p + 1)) {
-                    this.operatorsDifficulty[o] += this.nPropLevel[p];
+                for (int p : this.nEffectFluents[o]) {
+                    if (this.nPropLevel[p] == Integer.MAX_VALUE) {
+                        this.nPropLevel[p] = this.level + 1;
+                        this.nReached[this.nbNReached++] = p;
+                        if (this.isNGoal[p]) {
+                            this.goalCounter++;
+                        }
+                    }
                 }
             }
 
-            ppk = pNewProps;
-            npk = nNewProps;
-            ppk.andNot(pAcc);
-            npk.andNot(nAcc);
+            pFirst = pLast;
+            nFirst = nLast;
 
             this.level++;
-
-            for (int p = ppk.nextSetBit(0); p >= 0; p = ppk.nextSetBit(p + 1)) {
-                this.pPropLevel[p] = this.level;
-
-                if (pGoal.get(p)) {
-                    this.goalCounter++;
-                }
-            }
-
-            for (int p = npk.nextSetBit(0); p >= 0; p = npk.nextSetBit(p + 1)) {
-                this.nPropLevel[p] = this.level;
-
-                if (nGoal.get(p)) {
-                    this.goalCounter++;
-                }
-            }
         }
         return this.level;
     }
@@ -549,87 +651,67 @@ public class MyHeuristic {
      * */
     private int getSumValue() {
         int value = 0;
-        final BitVector pGoal = goal.getPositiveFluents();
-        final BitVector nGoal = goal.getNegativeFluents();
-        for (int g = pGoal.nextSetBit(0); g >= 0; g = pGoal.nextSetBit(g + 1)) {
+        for (int g : this.pGoalFluents) {
             value += this.pPropLevel[g];
         }
-        for (int g = nGoal.nextSetBit(0); g >= 0; g = nGoal.nextSetBit(g + 1)) {
+        for (int g : this.nGoalFluents) {
             value += this.nPropLevel[g];
         }
         return value;
     }
 
     /**
-     * Method that provides the heuristic associated with the <code>node</code>
+     * Returns the SUM value of the relaxed planning graph of the state represented by <code>node</code>, or
+     * <code>Integer.MAX_VALUE</code> if the goal can't be reached from it. If the node has a parent, the graph of the
+     * parent is computed once and the graphs of all its successors are obtained by updating it. It's not private
+     * so that <code>HeuristicBenchmark</code> can compare the ways of expanding the graph.
      * */
-    public double estimate(Node node){
-        // The heuristic we're using is not admissible
-        setAdmissible(false);
+    int computeSumValue(Node node) {
+        Node parent = node.getParent();
+        if (this.incremental && parent != null) {
+            if (parent != this.anchor) {
+                this.incrementalGraph.setAnchor(parent);
+                this.anchor = parent;
+            }
+            return this.incrementalGraph.evaluate(parent, node);
+        }
+
+        if (this.bitsetGraph != null)
+            return this.bitsetGraph.evaluate(node);
 
-        // We expand the relaxed graph based on the state represented by the current node
         expandRelaxedPlanningGraph(node);
+        return isGoalReachable() ? getSumValue() : Integer.MAX_VALUE;
+    }
 
-        // If it's not possible to reach the goal from this node, we return Double.MAX_VALUE
-        if(!isGoalReachable())
-            return Double.MAX_VALUE;
+    /**
+     * Method that provides the heuristic associated with the <code>node</code>
+     * */
+    public double estimate(Node node){
+        this.evaluations++;
 
-        // We take the minimum between the number of boxes and the number of box_place. If the depth of the node
-        // is less or equal than this minimum (so we are in the first actions) and the number of loaded boxes
-        // does not correspond to the depth of the node (so actions different from "fill_box_and_load_it_on_carrier"
-        // have been performed) we return Double.MAX_VALUE
-        int numLoadedBoxes = node.getNumLoadedBoxes(); // Number of loaded boxes
-        int numBoxes = getNumBoxes();                  // Total number of boxes
-        int numBoxPlaces = getNumBoxPlaces();          // Total number of box_place
+        // The heuristic we're using is not admissible
+        setAdmissible(false);
 
-        if(node.getDepth() <= Integer.min(numBoxes, numBoxPlaces) && numLoadedBoxes != node.getDepth())
+        // The rules that a good plan respects are checked first, since they're much cheaper than the relaxed graph:
+        // if at least one of them is not verified, we return Double.MAX_VALUE
+        if(this.pruningEngine.prune(node))
             return Double.MAX_VALUE;
 
-        // After the "fill_box_and_load_it_on_carrier" actions, there must be a number of moves equal to the
-        // minimum between the number of agents and the number of carriers
-        int numMoveActions = node.getTotalNumberOfMoveActions();
-        int numAgents = getNumAgents();
-        int numCarriers = getNumCarriers();
+        // With the landmarks, the value is the count of the ones the node still has to achieve, kept along the path
+        if (this.landmarks != null)
+            return this.landmarks.estimate(node);
 
-        if(node.getDepth() == Integer.min(numBoxes, numBoxPlaces) + Integer.min(numAgents, numCarriers)
-                && numMoveActions != Integer.min(numAgents, numCarriers))
-            return Double.MAX_VALUE;
+        // We compute the SUM value of the relaxed graph based on the state represented by the current node
+        final long begin = System.nanoTime();
+        int sumValue = computeSumValue(node);
+        this.pruningEngine.recordRelaxedGraph(System.nanoTime() - begin);
 
-        // If an agent performs a move action, the action which immediately follows this one must not be another move,
-        // otherwise it's a useless action
-        if(tooMuchMoves(node))
+        // If it's not possible to reach the goal from this node, we return Double.MAX_VALUE
+        if(sumValue == Integer.MAX_VALUE)
             return Double.MAX_VALUE;
 
         // If the node passes these controls, then gets as heuristic value the one provided by the SUM heuristic.
         // If the node is a solution, SUM returns 0
-        int sumValue = getSumValue();
         return sumValue;
     }
-
-    private boolean tooMuchMoves(Node node){
-        if(node.getAction() != null){
-            Action action1 = node.getAction();
-            int agent1 = action1.getInstantiations()[0];
-            if(action1.getName().equalsIgnoreCase("move_agent") || action1.getName().equalsIgnoreCase("move_agent_and_carrier")){
-                node = node.getParent();
-                while(node != null && node.getAction() != null){
-                    Action action2 = node.getAction();
-                    int agent2 = action2.getInstantiations()[0];
-                    if(agent1 == agent2){
-                        if(action2.getName().equalsIgnoreCase("move_agent") || action2.getName().equalsIgnoreCase("move_agent_and_carrier"))
-                            return true;
-                        else
-                            return false;
-                    }
-                    else{
-                        node = node.getParent();
-                    }
-                }
-            }
-            else{
-                return false;
-            }
-        }
-        return false;
-    }
 }
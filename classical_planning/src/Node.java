@@ -1,8 +1,6 @@
 import fr.uga.pddl4j.problem.State;
 import fr.uga.pddl4j.problem.operator.Action;
 
-import java.util.HashMap;
-
 public class Node extends State {
     /**
      * The parent node
@@ -25,65 +23,265 @@ public class Node extends State {
     private Action action;
 
     /**
-     * A matrix that stores, for each agent, the actions he performed
+     * The kind of <code>action</code>, as compiled by <code>DomainModel</code>, or 0 for the root
+     * */
+    private int actionKind;
+
+    /**
+     * The facts collected along the path that brought to this node, packed in a single array. After a header with
+     * the number of agents and the number of carriers, it contains:
+     * <ul>
+     *     <li>For each agent, a row with its identifier, the number of actions of each type it performed and the kind
+     *     of the last action it performed, or 0 if it performed none</li>
+     *     <li>For each carrier, a row with its identifier and the number of boxes loaded on it right now</li>
+     *     <li>For each box, a row with its identifier and the content inside it, or -1 if it's empty</li>
+     * </ul>
+     * The array is shared with the parent until it's needed: only the nodes that are expanded build their own copy,
+     * by applying their action to the facts of the parent (see <code>getFacts</code>).
+     * */
+    private int[] facts;
+
+    /**
+     * True if <code>facts</code> still refers to the array of the parent and the action of this node has not been
+     * applied to it yet
+     * */
+    private boolean sharedFacts;
+
+    /**
+     * An array of the size of the facts left by a previous use of this node (see <code>reuse</code>), in which
+     * <code>getFacts</code> copies the facts of the parent instead of allocating a new one, or null
      * */
-    private int[][] agentFacts;
+    private int[] spareFacts;
+
+    private final static int header_size = 2;
+    private final static int agent_row = 7;
+    private final static int carrier_row = 2;
+    private final static int box_row = 2;
+
+    // The row of an agent has its identifier, then a counter for each kind of action of DomainModel, and then the
+    // kind of its last action
     private final static int agent_ID = 0;
-    private final static int move_agent = 1;
-    private final static int move_agent_and_carrier = 2;
-    private final static int fill_box_and_load_it_on_carrier = 3;
-    private final static int unload_box_deliver_its_content_and_reload_it_on_carrier = 4;
-    private final static int unload_empty_box_from_carrier = 5;
+    private final static int last_action_kind = DomainModel.NB_KINDS;
 
     /**
-     * A matrix that stores, for each carrier, the number of boxes loaded right now and the number of actions
-     * performed until now
+     * The totals over all the agents of the 'move_agent' and 'move_agent_and_carrier' actions, of the
+     * 'fill_box_and_load_it_on_carrier' actions and of the 'unload_box_deliver_its_content_and_reload_it_on_carrier'
+     * actions, and the total number of boxes loaded on the carriers. They're kept incrementally from the parent.
      * */
-    private int[][] carrierFacts;
+    private int totalMoveActions;
+    private int totalFillActions;
+    private int totalDeliverActions;
+    private int numLoadedBoxes;
 
     /**
-     * Mapping between the boxes and their content
+     * The priority of the node in the frontier, computed once when the node is created: the number of 'move' actions,
+     * minus the number of 'fill' actions, minus the number of 'unload_deliver_load' actions, plus the cost
      * */
-    private HashMap<Integer, Integer> boxFacts;
+    private int priority;
 
+    /**
+     * The value of the heuristic for this node, computed once when the node is generated. It's NaN until then.
+     * */
+    private double heuristic = Double.NaN;
+
+    /**
+     * The landmarks achieved along the path that brought to this node, as kept by <code>LandmarkHeuristic</code>, or
+     * null until they're computed. The array is shared with the parent when the action achieves no landmark.
+     * */
+    private long[] landmarks;
+
+    /**
+     * The Zobrist fingerprint of the state of this node, which stands for it in the set of the explored nodes. It's
+     * computed by <code>computeFingerprint</code> when the node is generated.
+     * */
+    private long fingerprint;
 
-    public Node(State state, Node parent, double cost, Action action, int depth, int[][] agentFacts, int[][] carrierFacts, HashMap<Integer, Integer> boxFacts) {
+    /**
+     * Creates the root node of the search, with no action performed on the given agents, carriers and boxes
+     * */
+    public Node(State state, int[] agents, int[] carriers, int[] boxes) {
         super(state);
+        this.parent = null;
+        this.cost = 0;
+        this.action = null;
+        this.depth = 0;
+
+        this.facts = new int[header_size + agents.length * agent_row + carriers.length * carrier_row
+                + boxes.length * box_row];
+        this.facts[0] = agents.length;
+        this.facts[1] = carriers.length;
+        for (int i = 0; i < agents.length; i++)
+            this.facts[agentRow(i) + agent_ID] = agents[i];
+        for (int i = 0; i < carriers.length; i++)
+            this.facts[carrierRow(i)] = carriers[i];
+        for (int i = 0; i < boxes.length; i++) {
+            this.facts[boxRow(i)] = boxes[i];
+            this.facts[boxRow(i) + 1] = -1;
+        }
+        this.sharedFacts = false;
+        this.priority = 0;
+    }
+
+    /**
+     * Creates the node reached from <code>parent</code> by performing <code>action</code>
+     * */
+    public Node(State state, Node parent, double cost, Action action, int actionKind, int depth) {
+        super(state);
+        setPath(parent, cost, action, actionKind, depth);
+    }
+
+    /**
+     * Makes this node the one reached from <code>parent</code> by performing <code>action</code>, forgetting the path
+     * it was on, and keeps its own facts to copy the ones of the new parent into. The state is not changed: it's up
+     * to the caller to write the new one in place (see <code>CompiledEffects.apply(State, int, State)</code>). It lets
+     * a depth-first search keep a single node per depth (see <code>IdaStarSearch</code>), which is safe as long as
+     * the nodes below this one on its previous path are reused before being read again.
+     * */
+    public void reuse(Node parent, double cost, Action action, int actionKind, int depth) {
+        if (!this.sharedFacts)
+            this.spareFacts = this.facts;
+        this.heuristic = Double.NaN;
+        this.landmarks = null;
+        setPath(parent, cost, action, actionKind, depth);
+    }
+
+    /**
+     * Sets the path that brought to this node and everything that follows from it
+     * */
+    private void setPath(Node parent, double cost, Action action, int actionKind, int depth) {
         this.parent = parent;
         this.cost = cost;
         this.action = action;
-        this.agentFacts = agentFacts;
-        this.carrierFacts = carrierFacts;
-        this.boxFacts = boxFacts;
+        this.actionKind = actionKind;
         this.depth = depth;
-        if(this.action != null) {
+
+        // Share the facts of the parent: they're copied and updated only if this node is expanded
+        this.facts = parent.getFacts();
+        this.sharedFacts = true;
+
+        // Update the totals
+        this.totalMoveActions = parent.totalMoveActions;
+        this.totalFillActions = parent.totalFillActions;
+        this.totalDeliverActions = parent.totalDeliverActions;
+        this.numLoadedBoxes = parent.numLoadedBoxes;
+        switch (actionKind) {
+            case DomainModel.MOVE_AGENT:
+            case DomainModel.MOVE_AGENT_AND_CARRIER:
+                this.totalMoveActions++;
+                break;
+
+            // This action loads a box on the carrier
+            case DomainModel.FILL_BOX_AND_LOAD_IT_ON_CARRIER:
+                this.totalFillActions++;
+                this.numLoadedBoxes++;
+                break;
+
+            case DomainModel.UNLOAD_BOX_DELIVER_ITS_CONTENT_AND_RELOAD_IT_ON_CARRIER:
+                this.totalDeliverActions++;
+                break;
+
+            // This action unloads a box from the carrier
+            case DomainModel.UNLOAD_EMPTY_BOX_FROM_CARRIER:
+                this.numLoadedBoxes--;
+                break;
+        }
+
+        this.priority = this.totalMoveActions - this.totalFillActions - this.totalDeliverActions + (int) this.cost;
+    }
+
+    /**
+     * Computes the fingerprint of the state of this node: from all its fluents for the root, and from the fingerprint
+     * of the parent for the other nodes, by flipping the keys of the fluents that differ between the two states. The
+     * action changes only a few fluents, so only a few keys are flipped.
+     * */
+    public void computeFingerprint(Zobrist zobrist) {
+        if (this.parent == null) {
+            this.fingerprint = zobrist.hash(this);
+            return;
+        }
+        long fingerprint = this.parent.fingerprint;
+        final long[] words = this.words;
+        final long[] parentWords = this.parent.words;
+        final int length = Integer.max(words.length, parentWords.length);
+        for (int w = 0; w < length; w++) {
+            long changed = (w < words.length ? words[w] : 0L) ^ (w < parentWords.length ? parentWords[w] : 0L);
+            for (; changed != 0; changed &= changed - 1)
+                fingerprint ^= zobrist.key(w * Long.SIZE + Long.numberOfTrailingZeros(changed));
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Computes the fingerprint of the state of this node as the one of its canonical form under the symmetries of
+     * the problem, if <code>symmetry</code> is not null, so that symmetric states have the same fingerprint; or else
+     * as <code>computeFingerprint(zobrist)</code>. The canonical form is computed from the whole state.
+     * */
+    public void computeFingerprint(Zobrist zobrist, Symmetry symmetry) {
+        if (symmetry != null)
+            this.fingerprint = symmetry.fingerprint(this);
+        else
+            computeFingerprint(zobrist);
+    }
+
+    /**
+     * Returns the fingerprint of the state of this node
+     * */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Builds the facts of this node, if they're still shared with the parent. The successors of a node read its
+     * facts when they're created, so this must be called before creating them on several threads.
+     * */
+    public void prepareFacts() {
+        getFacts();
+    }
+
+    /**
+     * Returns the packed facts of this node. If they're still shared with the parent, a copy is made and the action
+     * of this node is applied to it.
+     * */
+    private int[] getFacts() {
+        if (this.sharedFacts) {
+            if (this.spareFacts != null && this.spareFacts.length == this.facts.length) {
+                System.arraycopy(this.facts, 0, this.spareFacts, 0, this.facts.length);
+                this.facts = this.spareFacts;
+            }
+            else {
+                this.facts = this.facts.clone();
+            }
+            this.spareFacts = null;
+            this.sharedFacts = false;
+
             // SET THE INFORMATION ON THE AGENT
 
             // Take the action parameters
             int[] actionParameters = this.action.getInstantiations();
 
             // The agent is always the parameter in the first position (0), regardless of the action
-            int agent_ID = actionParameters[0];
-
-            // Increment the number of actions of that type performed by that agent
-            for (int i = 0; i < this.agentFacts.length; i++)
-                if (this.agentFacts[i][0] == agent_ID)
-                    this.agentFacts[i][getActionIndex(this.action.getName())]++;
+            final int actionKind = this.actionKind;
+            int agent_ID = actionParameters[DomainModel.agentOffset(actionKind)];
+
+            // Increment the number of actions of that kind performed by that agent, and remember it as its last one
+            for (int i = 0; i < this.facts[0]; i++) {
+                if (this.facts[agentRow(i) + Node.agent_ID] == agent_ID) {
+                    this.facts[agentRow(i) + actionKind]++;
+                    this.facts[agentRow(i) + last_action_kind] = actionKind;
+                }
+            }
 
             // SET THE INFORMATION THE CARRIER
 
-            // The carrier is always the parameter in the second position (1), regardless of the action
-            int carrier_ID = actionParameters[1];
-
             int op;
-            switch (this.action.getName().toLowerCase()) {
+            switch (actionKind) {
                 // If the action is this, we ought to increment the number of boxes on that carrier
-                case "fill_box_and_load_it_on_carrier":
+                case DomainModel.FILL_BOX_AND_LOAD_IT_ON_CARRIER:
                     op = 1;
                     break;
 
                 // If the action is this, we ought to decrement the number of boxes on that carrier
-                case "unload_empty_box_from_carrier":
+                case DomainModel.UNLOAD_EMPTY_BOX_FROM_CARRIER:
                     op = -1;
                     break;
 
@@ -93,127 +291,137 @@ public class Node extends State {
                     break;
             }
 
-            // Modify the number of boxes on the carrier
-            for (int i = 0; i < this.carrierFacts.length; i++)
-                if (this.carrierFacts[i][0] == carrier_ID)
-                    this.carrierFacts[i][1] += op;
-
+            // Modify the number of boxes on the carrier, which is always the parameter in the second position (1)
+            if (op != 0) {
+                int carrier_ID = actionParameters[DomainModel.carrierOffset(actionKind)];
+                for (int i = 0; i < this.facts[1]; i++)
+                    if (this.facts[carrierRow(i)] == carrier_ID)
+                        this.facts[carrierRow(i) + 1] += op;
+            }
 
             // SET THE INFORMATION ON THE BOXES
             int box;
             int content;
-            switch(this.action.getName().toLowerCase()){
-                // If the action is this, we ought to add an entry: <box, content>
-                case "fill_box_and_load_it_on_carrier":
-                    box = actionParameters[2];      // In this action the box is the parameter in third position (2)
-                    content = actionParameters[4];  // In this action the content is the parameter in fifth position (4)
-
-                    // Add the entry
-                    boxFacts.put(box, content);
+            switch (actionKind) {
+                // If the action is this, we ought to set the content of the box
+                case DomainModel.FILL_BOX_AND_LOAD_IT_ON_CARRIER:
+                    box = actionParameters[DomainModel.boxOffset(actionKind)];
+                    content = actionParameters[DomainModel.contentOffset(actionKind)];
+
+                    for (int i = boxRow(0); i < this.facts.length; i += box_row)
+                        if (this.facts[i] == box)
+                            this.facts[i + 1] = content;
                     break;
 
-                case "unload_box_deliver_its_content_and_reload_it_on_carrier":
-                    // Take the box and the content and delete the entry
-                    box = actionParameters[2];      // In this action the box is the parameter in third position (2)
-                    content = actionParameters[3];  // In this action the content is the parameter in fourth position (3)
+                case DomainModel.UNLOAD_BOX_DELIVER_ITS_CONTENT_AND_RELOAD_IT_ON_CARRIER:
+                    // Take the box and the content and empty the box
+                    box = actionParameters[DomainModel.boxOffset(actionKind)];
+                    content = actionParameters[DomainModel.contentOffset(actionKind)];
 
-                    // Delete the entry
-                    boxFacts.remove(box, content);
+                    for (int i = boxRow(0); i < this.facts.length; i += box_row)
+                        if (this.facts[i] == box && this.facts[i + 1] == content)
+                            this.facts[i + 1] = -1;
                     break;
             }
         }
+        return this.facts;
     }
 
     /**
-     * Given the name of an action, returns the corresponding column index in the agentFacts matrix
+     * Returns the position in the packed facts of the row of the i-th agent
      * */
-    private int getActionIndex(String actionName){
-        switch (actionName.toLowerCase()){
-            case "move_agent":
-                return move_agent;
-            case "move_agent_and_carrier":
-                return move_agent_and_carrier;
-            case "fill_box_and_load_it_on_carrier":
-                return fill_box_and_load_it_on_carrier;
-            case "unload_box_deliver_its_content_and_reload_it_on_carrier":
-                return unload_box_deliver_its_content_and_reload_it_on_carrier;
-            case "unload_empty_box_from_carrier":
-                return unload_empty_box_from_carrier;
-            default: return -1;
-        }
+    private int agentRow(int i) {
+        return header_size + i * agent_row;
     }
 
     /**
-     * Restituisce la matrice delle informazioni sugli agenti
+     * Returns the position in the packed facts of the row of the i-th carrier
      * */
-    public int[][] getAgentFacts(){
-        int[][] m = new int[this.agentFacts.length][this.agentFacts[0].length];
-        for(int i=0;i<m.length;i++)
-            for(int j=0;j<m[0].length;j++)
-                m[i][j] = this.agentFacts[i][j];
-        return m;
+    private int carrierRow(int i) {
+        return header_size + this.facts[0] * agent_row + i * carrier_row;
     }
 
     /**
-     * Returns the matrix of the information on the carriers
+     * Returns the position in the packed facts of the row of the i-th box
      * */
-    public int[][] getCarrierFacts(){
-        int[][] m = new int[this.carrierFacts.length][this.carrierFacts[0].length];
-        for(int i=0;i<m.length;i++)
-            for(int j=0;j<m[0].length;j++)
-                m[i][j] = this.carrierFacts[i][j];
-        return m;
+    private int boxRow(int i) {
+        return carrierRow(this.facts[1]) + i * box_row;
     }
 
     /**
-     * Returns the mapping box-content
+     * Returns the kind of the last action performed by the agent in position <code>agentIndex</code> among the
+     * agents of the root, or 0 if it performed none. It only reads the facts, which must have been built already:
+     * they are for the root, and for every node with successors, since creating a successor builds the facts of its
+     * parent. So it can always be called on the parent of a node.
      * */
-    public HashMap<Integer, Integer> getBoxFacts(){
-        HashMap<Integer, Integer> ret = new HashMap<>();
-        for(int key : boxFacts.keySet())
-            ret.put(key, boxFacts.get(key));
-        return ret;
+    public int getLastActionKind(int agentIndex) {
+        if (this.sharedFacts)
+            throw new IllegalStateException("The facts of the node have not been built");
+        return this.facts[agentRow(agentIndex) + last_action_kind];
     }
 
     /**
      * Returns the number of loaded boxes
      * */
     public int getNumLoadedBoxes(){
-        int n = 0;
-        for(int i=0;i<carrierFacts.length;i++)
-            n += carrierFacts[i][1];
-        return n;
+        return numLoadedBoxes;
     }
 
     /**
      * Returns the number of 'move_agent' and 'move_agent_and_carrier' actions performed until now
-     * Restituisce il numero di azioni move_agent e move_agent_and_carrier effettuate finora
      * */
     public int getTotalNumberOfMoveActions(){
-        int n = 0;
-        for(int i=0;i<agentFacts.length;i++)
-            n += agentFacts[i][move_agent] + agentFacts[i][move_agent_and_carrier];
-        return n;
+        return totalMoveActions;
     }
 
     /**
      * Returns the number of 'fill_box_and_load_it_on_carrier' actions performed until now
      * */
     public int getTotalNumberOfFillActions(){
-        int n = 0;
-        for(int i=0;i<agentFacts.length;i++)
-            n += agentFacts[i][fill_box_and_load_it_on_carrier];
-        return n;
+        return totalFillActions;
     }
 
     /**
      * Returns the number of 'unload_box_deliver_its_content_and_load_it_on_carrier' actions performed until now
      * */
     public int getTotalNumberOfDeliverActions(){
-        int n = 0;
-        for(int i=0;i<agentFacts.length;i++)
-            n += agentFacts[i][unload_box_deliver_its_content_and_reload_it_on_carrier];
-        return n;
+        return totalDeliverActions;
+    }
+
+    /**
+     * Returns the priority of the node in the frontier: the lower, the sooner the node is explored
+     * */
+    public int getPriority(){
+        return priority;
+    }
+
+    /**
+     * Returns the value of the heuristic for this node
+     * */
+    public double getHeuristic(){
+        return heuristic;
+    }
+
+    /**
+     * Stores the value of the heuristic for this node
+     * */
+    public void setHeuristic(double heuristic){
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Returns the landmarks achieved along the path that brought to this node, or null if they haven't been computed
+     * (see <code>LandmarkHeuristic</code>). The array must not be modified.
+     * */
+    public long[] getLandmarks() {
+        return landmarks;
+    }
+
+    /**
+     * Stores the landmarks achieved along the path that brought to this node
+     * */
+    public void setLandmarks(long[] landmarks) {
+        this.landmarks = landmarks;
     }
 
     /**
@@ -237,6 +445,14 @@ public class Node extends State {
         return action;
     }
 
+    /**
+     * Returns the kind of the last action performed to get to this node, as compiled by <code>DomainModel</code>, or
+     * 0 for the root
+     * */
+    public int getActionKind() {
+        return actionKind;
+    }
+
     /**
      * Returns the depth of this node
      * */
@@ -0,0 +1,178 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.operator.Action;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Class that expands a node on a fork-join pool: the successors of the node are created, checked against the
+ * explored nodes and evaluated by the heuristic in parallel, and they're returned in the order of the actions that
+ * generate them, so the search inserts them in the frontier exactly as the sequential expansion would do.
+ *
+ * The heuristic keeps its scratch arrays in its fields, so every thread of the pool uses its own copy of it (see the
+ * copy constructor of <code>MyHeuristic</code>), which shares with the original all the tables computed from the
+ * problem. The explored nodes are only read during an expansion, and the search modifies them only between two
+ * expansions, when no task is running.
+ * */
+public class ParallelExpansion {
+
+    /**
+     * Number of successors below which a task evaluates them itself instead of splitting them in two tasks
+     * */
+    private static final int THRESHOLD = 4;
+
+    private final ForkJoinPool pool;
+
+    private final Problem problem;
+
+    private final CompiledEffects compiledEffects;
+
+    private final MyHeuristic heuristic;
+
+    /**
+     * The copy of the heuristic used by every thread, and all the copies created, to count their evaluations
+     * */
+    private final ThreadLocal<MyHeuristic> heuristics;
+
+    private final List<MyHeuristic> copies;
+
+    /**
+     * The symmetries whose canonical forms give the fingerprints of the successors, or null
+     * */
+    private Symmetry symmetry;
+
+    /**
+     * @param problem the problem to solve
+     * @param compiledEffects the effects of the actions of the problem
+     * @param heuristic the heuristic whose copies are used by the threads
+     * @param threads the number of threads of the pool
+     * */
+    public ParallelExpansion(Problem problem, CompiledEffects compiledEffects, MyHeuristic heuristic, int threads) {
+        this.pool = new ForkJoinPool(threads);
+        this.problem = problem;
+        this.compiledEffects = compiledEffects;
+        this.heuristic = heuristic;
+        this.copies = new ArrayList<>();
+        this.heuristics = ThreadLocal.withInitial(this::newCopy);
+    }
+
+    private MyHeuristic newCopy() {
+        MyHeuristic copy = new MyHeuristic(this.heuristic);
+        synchronized (this.copies) {
+            this.copies.add(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * Makes the fingerprints of the successors the ones of their canonical form under <code>symmetry</code>, or the
+     * plain ones if it's null
+     * */
+    public void setSymmetry(Symmetry symmetry) {
+        this.symmetry = symmetry;
+    }
+
+    /**
+     * Returns the successors of <code>parent</code> generated by the actions with the given indexes, in the same
+     * order, with their heuristic and their fingerprint already computed. The successors already explored with a cost
+     * not greater than their own are not evaluated, and their
+     * entry is null.
+     * */
+    public Node[] expand(Node parent, int[] actionIndexes, ClosedSet alreadyExploredNodes, Zobrist zobrist) {
+        parent.prepareFacts();
+        Node[] successors = new Node[actionIndexes.length];
+        this.pool.invoke(new ExpansionTask(parent, actionIndexes, alreadyExploredNodes, zobrist, successors, 0,
+                actionIndexes.length));
+        return successors;
+    }
+
+    /**
+     * Returns the number of times the copies of the heuristic have been computed
+     * */
+    public long getNumberOfEvaluations() {
+        long evaluations = 0;
+        synchronized (this.copies) {
+            for (MyHeuristic copy : this.copies)
+                evaluations += copy.getNumberOfEvaluations();
+        }
+        return evaluations;
+    }
+
+    /**
+     * Adds the statistics of the pruning rules of the copies of the heuristic to <code>statistics</code>
+     * */
+    public void addPruningStatistics(PruningEngine statistics) {
+        synchronized (this.copies) {
+            for (MyHeuristic copy : this.copies)
+                statistics.add(copy.getPruningEngine());
+        }
+    }
+
+    /**
+     * Stops the threads of the pool
+     * */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Task that generates and evaluates the successors in the positions <code>[from, to)</code>
+     * */
+    private class ExpansionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Node parent;
+
+        private final int[] actionIndexes;
+
+        private final ClosedSet alreadyExploredNodes;
+
+        private final Zobrist zobrist;
+
+        private final Node[] successors;
+
+        private final int from;
+
+        private final int to;
+
+        ExpansionTask(Node parent, int[] actionIndexes, ClosedSet alreadyExploredNodes, Zobrist zobrist,
+                      Node[] successors, int from, int to) {
+            this.parent = parent;
+            this.actionIndexes = actionIndexes;
+            this.alreadyExploredNodes = alreadyExploredNodes;
+            this.zobrist = zobrist;
+            this.successors = successors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > THRESHOLD) {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new ExpansionTask(this.parent, this.actionIndexes, this.alreadyExploredNodes, this.zobrist,
+                                this.successors, this.from, middle),
+                        new ExpansionTask(this.parent, this.actionIndexes, this.alreadyExploredNodes, this.zobrist,
+                                this.successors, middle, this.to));
+                return;
+            }
+
+            final MyHeuristic heuristic = heuristics.get();
+            for (int k = this.from; k < this.to; k++) {
+                final int actionIndex = this.actionIndexes[k];
+                final Action a = problem.getActions().get(actionIndex);
+                Node next = new Node(compiledEffects.apply(this.parent, actionIndex), this.parent,
+                        this.parent.getCost() + 1, a, heuristic.getModel().getKind(actionIndex),
+                        this.parent.getDepth() + 1);
+                next.computeFingerprint(this.zobrist, symmetry);
+                if (this.alreadyExploredNodes.contains(next.getFingerprint(), (int) next.getCost()))
+                    continue;
+                next.setHeuristic(heuristic.estimate(next));
+                this.successors[k] = next;
+            }
+        }
+    }
+}
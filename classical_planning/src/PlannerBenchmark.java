@@ -0,0 +1,155 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.Parser;
+import fr.uga.pddl4j.plan.Plan;
+import fr.uga.pddl4j.planners.LogLevel;
+import fr.uga.pddl4j.problem.DefaultProblem;
+import fr.uga.pddl4j.problem.Problem;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The benchmarks of the hot paths of the planner, run by <code>BenchmarkHarness</code> on every problem given:
+ * <ul>
+ *     <li><code>estimate</code>: <code>MyHeuristic.estimate</code> of a node;</li>
+ *     <li><code>relaxedGraph</code>: the expansion of the relaxed planning graph of a node, without the checks of
+ *     <code>estimate</code>;</li>
+ *     <li><code>node</code>: the creation of a node from its parent, with the copy of the facts made when the node is
+ *     expanded;</li>
+ *     <li><code>successors</code>: the actions applicable to a node and the states they lead to;</li>
+ *     <li><code>frontier</code>: an offer and a poll on a frontier of 1024 nodes;</li>
+ *     <li><code>solve</code>: a whole search with <code>MyAlgorithm</code>, in single shot mode.</li>
+ * </ul>
+ * The nodes of the micro-benchmarks are the successors met along random walks from the initial state, as in
+ * <code>HeuristicBenchmark</code>, with a fixed seed.
+ *
+ * Usage: <code>java PlannerBenchmark [--quick] [--save file] [--baseline file] domain problem...</code>. With
+ * <code>--save</code> the results are written to the file, with <code>--baseline</code> they're compared with the
+ * ones written before to it; see <code>benchmark.sh</code> and the baseline in <code>benchmarks/baseline.txt</code>.
+ * */
+public class PlannerBenchmark {
+
+    private static final int WALK_STEPS = 2000;
+
+    private static final long SEED = 42;
+
+    private static final int FRONTIER_SIZE = 1024;
+
+    public static void main(String[] args) throws IOException {
+        boolean quick = false;
+        Path save = null;
+        Path baseline = null;
+        int first = 0;
+        for (; first < args.length && args[first].startsWith("--"); first++) {
+            switch (args[first]) {
+                case "--quick":
+                    quick = true;
+                    break;
+                case "--save":
+                    save = Paths.get(args[++first]);
+                    break;
+                case "--baseline":
+                    baseline = Paths.get(args[++first]);
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[first]);
+                    return;
+            }
+        }
+        if (args.length - first < 2) {
+            System.out.println("Usage: PlannerBenchmark [--quick] [--save file] [--baseline file] domain problem...");
+            return;
+        }
+
+        BenchmarkHarness harness = quick ? new BenchmarkHarness(2, 3, 100) : new BenchmarkHarness(5, 5, 200);
+        final String domain = args[first];
+        for (int i = first + 1; i < args.length; i++) {
+            final String name = Paths.get(args[i]).getFileName().toString().replace(".pddl", "");
+            Problem problem = instantiate(domain, args[i]);
+            if (problem == null)
+                return;
+            microBenchmarks(harness, name, problem);
+            harness.singleShot("solve." + name, () -> solve(problem), quick ? 0 : 1, quick ? 1 : 3);
+        }
+
+        if (baseline != null && Files.exists(baseline))
+            harness.compare(baseline);
+        if (save != null)
+            harness.save(save, String.format("%s, %s %s, %d processors", System.getProperty("java.vm.version"),
+                    System.getProperty("os.name"), System.getProperty("os.arch"),
+                    Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static Problem instantiate(String domain, String problemFile) throws FileNotFoundException {
+        DefaultParsedProblem parsedProblem = new Parser().parse(domain, problemFile);
+        if (parsedProblem == null)
+            return null;
+        Problem problem = new DefaultProblem(parsedProblem);
+        problem.instantiate();
+        return problem;
+    }
+
+    private static void microBenchmarks(BenchmarkHarness harness, String name, Problem problem) {
+        final List<Node> nodes = HeuristicBenchmark.sampleNodes(problem, WALK_STEPS, new Random(SEED));
+        final Node[] sample = nodes.toArray(new Node[0]);
+        final MyHeuristic heuristic = new MyHeuristic(problem);
+        final SuccessorGenerator successorGenerator = new SuccessorGenerator(problem);
+        final CompiledEffects compiledEffects = new CompiledEffects(problem);
+        for (Node node : sample)
+            node.setHeuristic(heuristic.estimate(node));
+
+        // The index of the next node of the sample used by every benchmark
+        final int[] next = new int[1];
+
+        harness.averageTime("estimate." + name, () -> {
+            final Node node = sample[next[0]++ % sample.length];
+            return (long) heuristic.estimate(node);
+        });
+
+        harness.averageTime("relaxedGraph." + name, () -> {
+            final Node node = sample[next[0]++ % sample.length];
+            return heuristic.computeSumValue(node);
+        });
+
+        harness.averageTime("node." + name, () -> {
+            final Node node = sample[next[0]++ % sample.length];
+            Node copy = new Node(node, node.getParent(), node.getCost(), node.getAction(),
+                    node.getActionKind(), node.getDepth());
+            copy.prepareFacts();
+            return copy.getPriority();
+        });
+
+        harness.averageTime("successors." + name, () -> {
+            final Node node = sample[next[0]++ % sample.length];
+            long value = 0;
+            for (int actionIndex : successorGenerator.getApplicableActions(node))
+                value += compiledEffects.apply(node, actionIndex).cardinality();
+            return value;
+        });
+
+        final Frontier frontier = new Frontier();
+        for (int k = 0; k < FRONTIER_SIZE; k++)
+            frontier.offer(sample[k % sample.length]);
+        harness.averageTime("frontier." + name, () -> {
+            frontier.offer(sample[next[0]++ % sample.length]);
+            return frontier.poll().getPriority();
+        });
+    }
+
+    /**
+     * Solves the problem with the default options of the planner, and returns the length of the plan
+     * */
+    private static long solve(Problem problem) {
+        MyAlgorithm planner = new MyAlgorithm();
+        planner.setTimeout(600);
+        planner.setLogLevel(LogLevel.OFF);
+        planner.setThreads(1);
+        Plan plan = planner.solve(problem);
+        return plan != null ? plan.size() : 0;
+    }
+}
@@ -0,0 +1,196 @@
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Generator of problems of the domain <code>emergency_services_logistics_domain</code>, of any size. As in the
+ * problems written by hand, all the agents, the carriers and the boxes start at the depot, the boxes are empty and not
+ * loaded, the box places are free and the people are in the other locations; the goal is to satisfy all the needs of
+ * the people. What changes is the number of every kind of object, and where the people are and what they need, which
+ * are drawn at random from a seed: the same parameters always give the same problem.
+ *
+ * The box places are split evenly among the carriers, and the contents are the ones of the problems written by hand:
+ * food, medicine and tools. Every problem generated can be solved, since every carrier has at least a box place.
+ *
+ * Usage: <code>java ProblemGenerator [options]</code>, see <code>--help</code>. The problem is written to the
+ * standard output, or to the file given with <code>--output</code>.
+ * */
+@CommandLine.Command(name = "ProblemGenerator", mixinStandardHelpOptions = true,
+        description = "Generates a problem of the emergency services logistics domain")
+public class ProblemGenerator implements Callable<Integer> {
+
+    private static final String[] CONTENTS = {"food", "medicine", "tools"};
+
+    @CommandLine.Option(names = {"--agents"}, defaultValue = "1", description = "Number of agents (preset: 1)")
+    private int agents;
+
+    @CommandLine.Option(names = {"--carriers"}, defaultValue = "1", description = "Number of carriers (preset: 1)")
+    private int carriers;
+
+    @CommandLine.Option(names = {"--box-places"}, defaultValue = "2",
+            description = "Number of box places of every carrier (preset: 2)")
+    private int boxPlacesPerCarrier;
+
+    @CommandLine.Option(names = {"--boxes"}, defaultValue = "2", description = "Number of boxes (preset: 2)")
+    private int boxes;
+
+    @CommandLine.Option(names = {"--locations"}, defaultValue = "3",
+            description = "Number of locations, besides the depot (preset: 3)")
+    private int locations;
+
+    @CommandLine.Option(names = {"--people"}, defaultValue = "3", description = "Number of people (preset: 3)")
+    private int people;
+
+    @CommandLine.Option(names = {"--needs"}, defaultValue = "1",
+            description = "Number of contents needed by every person, at most 3 (preset: 1)")
+    private int needsPerPerson;
+
+    @CommandLine.Option(names = {"--seed"}, defaultValue = "1", description = "Seed of the random choices (preset: 1)")
+    private long seed;
+
+    @CommandLine.Option(names = {"--output"}, description = "File where the problem is written")
+    private Path output;
+
+    public ProblemGenerator() {
+    }
+
+    /**
+     * @param agents the number of agents
+     * @param carriers the number of carriers
+     * @param boxPlacesPerCarrier the number of box places of every carrier
+     * @param boxes the number of boxes
+     * @param locations the number of locations, besides the depot
+     * @param people the number of people
+     * @param needsPerPerson the number of contents needed by every person
+     * @param seed the seed of the random choices
+     * */
+    public ProblemGenerator(int agents, int carriers, int boxPlacesPerCarrier, int boxes, int locations, int people,
+                            int needsPerPerson, long seed) {
+        this.agents = agents;
+        this.carriers = carriers;
+        this.boxPlacesPerCarrier = boxPlacesPerCarrier;
+        this.boxes = boxes;
+        this.locations = locations;
+        this.people = people;
+        this.needsPerPerson = needsPerPerson;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the text of the problem, in PDDL
+     * */
+    public String generate() {
+        if (this.agents < 1 || this.carriers < 1 || this.boxPlacesPerCarrier < 1 || this.boxes < 1
+                || this.locations < 1 || this.people < 1)
+            throw new IllegalArgumentException("There must be at least one object of every kind");
+        if (this.needsPerPerson < 1 || this.needsPerPerson > CONTENTS.length)
+            throw new IllegalArgumentException("A person must need from 1 to " + CONTENTS.length + " contents");
+
+        final Random random = new Random(this.seed);
+        final int boxPlaces = this.carriers * this.boxPlacesPerCarrier;
+        StringBuilder pddl = new StringBuilder();
+
+        pddl.append(String.format("(define (problem emergency_services_logistics_a%d_c%d_bp%d_b%d_l%d_p%d_n%d_s%d)%n%n",
+                this.agents, this.carriers, this.boxPlacesPerCarrier, this.boxes, this.locations, this.people,
+                this.needsPerPerson, this.seed));
+        pddl.append("    (:domain emergency_services_logistics_domain)\n\n");
+
+        pddl.append("    (:objects\n");
+        pddl.append("        ").append(names("b", this.boxes)).append(" - box\n");
+        pddl.append("        ").append(names("l", this.locations)).append(" - location\n");
+        pddl.append("        ").append(names("p", this.people)).append(" - person\n");
+        pddl.append("        ").append(String.join(" ", CONTENTS)).append(" - content\n");
+        pddl.append("        ").append(names("a", this.agents)).append(" - agent\n");
+        pddl.append("        ").append(names("c", this.carriers)).append(" - carrier\n");
+        pddl.append("        ").append(names("bp", boxPlaces)).append(" - box_place\n");
+        pddl.append("    )\n\n");
+
+        pddl.append("    (:init\n\n");
+        pddl.append("        ; Initially all the boxes, the carriers and the agents are at the depot\n");
+        for (int i = 1; i <= this.boxes; i++)
+            pddl.append("        (at b").append(i).append(" depot)\n");
+        for (int i = 1; i <= this.agents; i++)
+            pddl.append("        (at a").append(i).append(" depot)\n");
+        for (int i = 1; i <= this.carriers; i++)
+            pddl.append("        (at c").append(i).append(" depot)\n");
+
+        pddl.append("\n        ; Initially the people are in their respective locations\n");
+        for (int i = 1; i <= this.people; i++)
+            pddl.append("        (at p").append(i).append(" l").append(1 + random.nextInt(this.locations))
+                    .append(")\n");
+
+        pddl.append("\n        ; Initially all the boxes are empty\n");
+        for (int i = 1; i <= this.boxes; i++)
+            for (String content : CONTENTS)
+                pddl.append("        (isNotInsideABox ").append(content).append(" b").append(i).append(")\n");
+
+        pddl.append("\n        ; Initially the boxes are not loaded\n");
+        for (int c = 1; c <= this.carriers; c++)
+            for (int i = 1; i <= this.boxes; i++)
+                pddl.append("        (isNotLoadedOnCarrier b").append(i).append(" c").append(c).append(")\n");
+
+        pddl.append("\n        ; Initially the box_place are free\n");
+        for (int i = 1; i <= boxPlaces; i++)
+            pddl.append("        (isFree bp").append(i).append(")\n");
+
+        List<String> goals = new ArrayList<>();
+        pddl.append("\n        ; Define the people's needs\n");
+        List<String> contents = new ArrayList<>(List.of(CONTENTS));
+        for (int i = 1; i <= this.people; i++) {
+            Collections.shuffle(contents, random);
+            for (String content : contents.subList(0, this.needsPerPerson)) {
+                pddl.append("        (needsContent p").append(i).append(" ").append(content).append(")\n");
+                goals.add("(isSatisfied p" + i + " " + content + ")");
+            }
+        }
+
+        pddl.append("\n        ; Assign the box places to the carriers\n");
+        for (int i = 1; i <= boxPlaces; i++)
+            pddl.append("        (boxPlaceBelongsToCarrier bp").append(i).append(" c")
+                    .append(1 + (i - 1) / this.boxPlacesPerCarrier).append(")\n");
+        pddl.append("\n    )\n\n");
+
+        pddl.append("    (:goal (and\n");
+        for (String goal : goals)
+            pddl.append("        ").append(goal).append("\n");
+        pddl.append("    ))\n\n)\n");
+        return pddl.toString();
+    }
+
+    /**
+     * Writes the problem to <code>file</code>
+     * */
+    public void write(Path file) throws IOException {
+        Files.writeString(file, generate());
+    }
+
+    @Override
+    public Integer call() throws IOException {
+        if (this.output != null)
+            write(this.output);
+        else
+            System.out.print(generate());
+        return 0;
+    }
+
+    /**
+     * Returns the names <code>prefix1 ... prefixN</code>
+     * */
+    private static String names(String prefix, int n) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 1; i <= n; i++)
+            names.append(i > 1 ? " " : "").append(prefix).append(i);
+        return names.toString();
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new ProblemGenerator()).execute(args));
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the pruning rules of the domain on a node before its heuristic is computed, the cheapest first, and stops at
+ * the first rule that prunes the node: the relaxed planning graph, which costs microseconds, is expanded only for the
+ * nodes that respect all the rules, which cost nanoseconds.
+ *
+ * The engine counts, for every rule, the nodes it has checked and the ones it has pruned, and it measures the time
+ * spent in the rules and the time spent expanding the relaxed planning graph. The time saved by a rule is estimated
+ * as the nodes it has pruned times the mean time of an expansion of the graph: the graph would have been expanded for
+ * them without the rule, or at least without any rule, since a node pruned by a rule is not checked by the next ones.
+ *
+ * The rules are shared by the copies of an engine, while the counters are not: every copy of the heuristic has its
+ * own engine, used by a single thread, and the counters of the copies are summed at the end of the search with
+ * <code>add</code>.
+ * */
+public class PruningEngine {
+
+    private final PruningRule[] rules;
+
+    /**
+     * The nodes checked and pruned by every rule, in the order of <code>rules</code>
+     * */
+    private final long[] checked;
+
+    private final long[] pruned;
+
+    /**
+     * The time spent in the rules, and the time spent in the expansions of the relaxed planning graph with their
+     * number
+     * */
+    private long rulesNanos;
+
+    private long relaxedGraphNanos;
+
+    private long relaxedGraphs;
+
+    /**
+     * Creates an engine running <code>rules</code> by increasing cost, and in the given order if they cost the same
+     * */
+    public PruningEngine(List<PruningRule> rules) {
+        List<PruningRule> sorted = new ArrayList<>(rules);
+        sorted.sort(Comparator.comparingInt(PruningRule::getCost));
+        this.rules = sorted.toArray(new PruningRule[0]);
+        this.checked = new long[this.rules.length];
+        this.pruned = new long[this.rules.length];
+    }
+
+    /**
+     * Creates an engine with the same rules as <code>other</code> and all the counters at zero
+     * */
+    public PruningEngine(PruningEngine other) {
+        this.rules = other.rules;
+        this.checked = new long[this.rules.length];
+        this.pruned = new long[this.rules.length];
+    }
+
+    /**
+     * Creates the engine with all the rules of the domain
+     * */
+    public static PruningEngine createDefault(DomainModel model) {
+        List<PruningRule> rules = new ArrayList<>();
+        rules.add(new LoadingPhaseRule(model));
+        rules.add(new MovesAfterLoadingRule(model));
+        rules.add(new ConsecutiveMovesRule(model));
+        return new PruningEngine(rules);
+    }
+
+    /**
+     * Returns true if <code>node</code> breaks at least a rule, and so it must be pruned
+     * */
+    public boolean prune(Node node) {
+        final long begin = System.nanoTime();
+        boolean prune = false;
+        for (int r = 0; r < this.rules.length && !prune; r++) {
+            this.checked[r]++;
+            if (this.rules[r].prune(node)) {
+                this.pruned[r]++;
+                prune = true;
+            }
+        }
+        this.rulesNanos += System.nanoTime() - begin;
+        return prune;
+    }
+
+    /**
+     * Records an expansion of the relaxed planning graph that lasted <code>nanos</code> nanoseconds
+     * */
+    public void recordRelaxedGraph(long nanos) {
+        this.relaxedGraphNanos += nanos;
+        this.relaxedGraphs++;
+    }
+
+    /**
+     * Adds the counters of <code>other</code>, an engine with the same rules, to the ones of this engine
+     * */
+    public void add(PruningEngine other) {
+        if (other.rules != this.rules)
+            throw new IllegalArgumentException("The engines have different rules");
+        for (int r = 0; r < this.rules.length; r++) {
+            this.checked[r] += other.checked[r];
+            this.pruned[r] += other.pruned[r];
+        }
+        this.rulesNanos += other.rulesNanos;
+        this.relaxedGraphNanos += other.relaxedGraphNanos;
+        this.relaxedGraphs += other.relaxedGraphs;
+    }
+
+    /**
+     * Returns the number of nodes pruned by the rule named <code>name</code>, or -1 if there is no such rule
+     * */
+    public long getPruned(String name) {
+        for (int r = 0; r < this.rules.length; r++)
+            if (this.rules[r].getName().equals(name))
+                return this.pruned[r];
+        return -1;
+    }
+
+    /**
+     * Returns the mean time of an expansion of the relaxed planning graph, in nanoseconds
+     * */
+    public double getMeanRelaxedGraphNanos() {
+        return this.relaxedGraphs > 0 ? (double) this.relaxedGraphNanos / this.relaxedGraphs : 0;
+    }
+
+    /**
+     * Returns the statistics of the rules: a line for every rule, in the order in which they're checked, with the
+     * nodes checked and pruned and the time saved, and a last line with the time spent in the rules
+     * */
+    public String report() {
+        final double graphNanos = getMeanRelaxedGraphNanos();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "%-22s %12s %12s %8s %14s%n", "pruning rule", "checked", "pruned",
+                "pruned%", "saved ms"));
+        long totalPruned = 0;
+        for (int r = 0; r < this.rules.length; r++) {
+            report.append(String.format(Locale.ROOT, "%-22s %12d %12d %7.1f%% %14.1f%n", this.rules[r].getName(),
+                    this.checked[r], this.pruned[r], this.checked[r] > 0 ? 100.0 * this.pruned[r] / this.checked[r] : 0,
+                    this.pruned[r] * graphNanos / 1e6));
+            totalPruned += this.pruned[r];
+        }
+        report.append(String.format(Locale.ROOT, "rules %.1f ms, relaxed graph %.1f us per node, saved %.1f ms%n",
+                this.rulesNanos / 1e6, graphNanos / 1e3, (totalPruned * graphNanos - this.rulesNanos) / 1e6));
+        return report.toString();
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * A rule that a good plan of the domain always respects, checked on a node before its heuristic is computed: if the
+ * node breaks the rule, it's pruned, i.e. it gets the heuristic <code>Double.MAX_VALUE</code> and the relaxed planning
+ * graph is not expanded at all. The rules are run by <code>PruningEngine</code>, the cheapest first.
+ *
+ * A rule must answer in constant time, reading only the node, its parent and the totals kept incrementally in them
+ * (see <code>Node</code>), and it must not change any state: the same rule is used at the same time by the copies of
+ * the heuristic on different threads, on successors of the same parent. This includes the nodes, so a rule must only
+ * use the accessors of <code>Node</code> that don't build anything lazily: the packed facts of the parent can be read
+ * with <code>Node.getLastActionKind</code>, which never builds them.
+ * */
+public interface PruningRule {
+
+    /**
+     * Returns the name of the rule, used in the statistics
+     * */
+    String getName();
+
+    /**
+     * Returns the relative cost of checking the rule: the rules with a lower cost are checked first
+     * */
+    int getCost();
+
+    /**
+     * Returns true if <code>node</code> breaks the rule, and so it must be pruned
+     * */
+    boolean prune(Node node);
+}
@@ -0,0 +1,44 @@
+/**
+ * Implementation of <code>BitsetKernel</code> working one word at a time. It's always available, and it's the one
+ * used when the Vector API isn't.
+ * */
+public class ScalarBitsetKernel implements BitsetKernel {
+
+    @Override
+    public boolean isSubset(int[] words, long[] masks, int from, int to, long[] set) {
+        for (int i = from; i < to; i++)
+            if ((masks[i] & ~set[words[i]]) != 0)
+                return false;
+        return true;
+    }
+
+    @Override
+    public boolean or(int[] words, long[] masks, int from, int to, long[] target) {
+        long added = 0;
+        for (int i = from; i < to; i++) {
+            final int w = words[i];
+            added |= masks[i] & ~target[w];
+            target[w] |= masks[i];
+        }
+        return added != 0;
+    }
+
+    @Override
+    public void andNot(long[] a, int aFrom, long[] b, int bFrom, long[] target, int targetFrom, int length) {
+        for (int i = 0; i < length; i++)
+            target[targetFrom + i] = a[aFrom + i] & ~b[bFrom + i];
+    }
+
+    @Override
+    public int andCardinality(long[] a, long[] b) {
+        int count = 0;
+        for (int i = 0; i < a.length; i++)
+            count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,101 @@
+import fr.uga.pddl4j.parser.DefaultParsedProblem;
+import fr.uga.pddl4j.parser.Parser;
+import fr.uga.pddl4j.plan.Plan;
+import fr.uga.pddl4j.planners.LogLevel;
+import fr.uga.pddl4j.problem.DefaultProblem;
+import fr.uga.pddl4j.problem.Problem;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Benchmark of how the planner scales with the size of the problem: it generates problems of growing size with
+ * <code>ProblemGenerator</code> and solves each of them with the default options of <code>MyAlgorithm</code>,
+ * reporting for each size the time to ground the problem and to search it, the explored nodes, the peak of the heap
+ * and the length of the plan. The grid stops at the first size that is not solved within the timeout, since the
+ * bigger ones would not be either.
+ *
+ * At scale <code>k</code> the problem has <code>1 + (k - 1) / 2</code> agents and carriers with 2 box places each,
+ * <code>2k</code> boxes, <code>2 + k</code> locations and <code>2 + 2k</code> people, each needing
+ * <code>min(3, 1 + (k - 1) / 2)</code> contents: problem 3 is about scale 3.
+ *
+ * Usage: <code>java ScalingBenchmark [options] domain</code>, see <code>--help</code>, or <code>scaling.sh</code>.
+ * */
+@CommandLine.Command(name = "ScalingBenchmark", mixinStandardHelpOptions = true,
+        description = "Solves generated problems of growing size and reports how the planner scales")
+public class ScalingBenchmark implements Callable<Integer> {
+
+    @CommandLine.Parameters(index = "0", description = "The domain file")
+    private String domain;
+
+    @CommandLine.Option(names = {"--from"}, defaultValue = "1", description = "First scale of the grid (preset: 1)")
+    private int from;
+
+    @CommandLine.Option(names = {"--to"}, defaultValue = "10", description = "Last scale of the grid (preset: 10)")
+    private int to;
+
+    @CommandLine.Option(names = {"--timeout"}, defaultValue = "120",
+            description = "Timeout of every search, in seconds (preset: 120)")
+    private int timeout;
+
+    @CommandLine.Option(names = {"--seed"}, defaultValue = "1",
+            description = "Seed of the generated problems (preset: 1)")
+    private long seed;
+
+    @Override
+    public Integer call() throws Exception {
+        System.out.println(String.format(Locale.ROOT, "%5s %4s %4s %4s %4s %4s %5s %9s %9s %10s %9s %5s",
+                "scale", "ag", "box", "loc", "ppl", "need", "facts", "ground s", "search s", "explored",
+                "peak MB", "plan"));
+
+        for (int k = this.from; k <= this.to; k++) {
+            final int agents = 1 + (k - 1) / 2;
+            final int needs = Integer.min(3, 1 + (k - 1) / 2);
+            ProblemGenerator generator = new ProblemGenerator(agents, agents, 2, 2 * k, 2 + k, 2 + 2 * k, needs,
+                    this.seed);
+            Path file = Files.createTempFile("scaling-" + k + "-", ".pddl");
+            generator.write(file);
+
+            try {
+                // The planner is created first, since turning off its log also silences the parser
+                MyAlgorithm planner = new MyAlgorithm();
+                planner.setTimeout(this.timeout);
+                planner.setLogLevel(LogLevel.OFF);
+                planner.setThreads(1);
+
+                long begin = System.nanoTime();
+                DefaultParsedProblem parsedProblem = new Parser().parse(this.domain, file.toString());
+                if (parsedProblem == null)
+                    return 1;
+                Problem problem = new DefaultProblem(parsedProblem);
+                problem.instantiate();
+                final double groundSeconds = (System.nanoTime() - begin) / 1e9;
+
+                // The sizes are solved one after the other, so the peak of the heap can be reset for each of them
+                MemoryMeter.resetHeapPeaks();
+                MemoryMeter memoryMeter = new MemoryMeter();
+                begin = System.nanoTime();
+                Plan plan = planner.solve(problem);
+                final double searchSeconds = (System.nanoTime() - begin) / 1e9;
+
+                System.out.println(String.format(Locale.ROOT, "%5d %4d %4d %4d %4d %4d %5d %9.2f %9.2f %10d %9.1f %5s",
+                        k, agents, 2 * k, 2 + k, 2 + 2 * k, needs, problem.getFluents().size(), groundSeconds,
+                        searchSeconds, planner.getExploredNodes(), memoryMeter.getPeakHeapBytes() / (1024.0 * 1024.0),
+                        plan != null ? String.valueOf(plan.size()) : "-"));
+                if (plan == null)
+                    break;
+            }
+            finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new ScalingBenchmark()).execute(args));
+    }
+}
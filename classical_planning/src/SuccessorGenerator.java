@@ -0,0 +1,243 @@
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.State;
+import fr.uga.pddl4j.problem.operator.Action;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class that provides the actions applicable to a state without testing every grounded action of the problem.
+ * It's built once per problem and organizes the actions in a decision tree on their positive preconditions: every
+ * inner node of the tree tests a fluent and has two children, one holding the actions that require that fluent and
+ * one holding the actions that don't care about it. Each action is stored in the node where all its positive
+ * preconditions have been tested, so walking the tree along the fluents that are true in a state leads exactly to
+ * the applicable actions.
+ *
+ * The fluent tested by a node is the one required by the largest number of the actions that reach it: in this
+ * domain the first tests are the <code>at ?a ?l</code> and <code>at ?c ?l</code> fluents, so the whole subtree of
+ * an agent or a carrier which is somewhere else is skipped at once. The cost of a lookup grows with the number of
+ * applicable actions rather than with the total number of grounded actions.
+ * */
+public class SuccessorGenerator {
+
+    /**
+     * The fluent tested by each node of the tree, or -1 if the node is a leaf
+     * */
+    private final int[] testedFluent;
+
+    /**
+     * The child of each node containing the actions that require the tested fluent, or -1 if there is none
+     * */
+    private final int[] requiredChild;
+
+    /**
+     * The child of each node containing the actions that don't require the tested fluent, or -1 if there is none
+     * */
+    private final int[] dontCareChild;
+
+    /**
+     * For each node, the range <code>[firstAction[n], firstAction[n+1])</code> of <code>nodeActions</code> with the
+     * actions whose positive preconditions have all been tested when the node is reached
+     * */
+    private final int[] firstAction;
+
+    /**
+     * The indexes of the actions stored in the nodes, grouped by node
+     * */
+    private final int[] nodeActions;
+
+    /**
+     * The negative preconditions of each action, or null if the action has none. They're not part of the tree and
+     * are checked on the state when the action is reached
+     * */
+    private final BitVector[] negativePreconditions;
+
+    /**
+     * The maximum depth of the tree, used to size the stack of the visit
+     * */
+    private final int maxDepth;
+
+    public SuccessorGenerator(Problem problem) {
+
+        final List<Action> actions = problem.getActions();
+        final int nbFluents = problem.getFluents().size();
+
+        // The actions still to be placed, each one with the positive preconditions not yet tested by the tree
+        List<int[]> pending = new ArrayList<>(actions.size());
+        this.negativePreconditions = new BitVector[actions.size()];
+
+        for (int i = 0; i < actions.size(); i++) {
+            final Action a = actions.get(i);
+            final BitVector pPre = a.getPrecondition().getPositiveFluents();
+            final BitVector nPre = a.getPrecondition().getNegativeFluents();
+
+            // The first entry is the index of the action, the others are its positive preconditions
+            int[] item = new int[pPre.cardinality() + 1];
+            item[0] = i;
+            int k = 1;
+            for (int p = pPre.nextSetBit(0); p >= 0; p = pPre.nextSetBit(p + 1))
+                item[k++] = p;
+            pending.add(item);
+
+            if (!nPre.isEmpty())
+                this.negativePreconditions[i] = nPre;
+        }
+
+        // The nodes of the tree are created breadth first: each entry of the queue is a node still to be built,
+        // together with the actions that reach it and the depth at which it's placed
+        List<Integer> tested = new ArrayList<>();
+        List<Integer> required = new ArrayList<>();
+        List<Integer> dontCare = new ArrayList<>();
+        List<List<Integer>> stored = new ArrayList<>();
+
+        ArrayDeque<Object[]> queue = new ArrayDeque<>();
+        tested.add(-1);
+        required.add(-1);
+        dontCare.add(-1);
+        stored.add(new ArrayList<>());
+        queue.add(new Object[]{0, pending, 1});
+
+        // Number of actions requiring each fluent, among the ones reaching the node being built
+        int[] occurrences = new int[nbFluents];
+        int depth = 1;
+
+        while (!queue.isEmpty()) {
+            Object[] entry = queue.poll();
+            int node = (Integer) entry[0];
+            @SuppressWarnings("unchecked")
+            List<int[]> items = (List<int[]>) entry[1];
+            int nodeDepth = (Integer) entry[2];
+            depth = Integer.max(depth, nodeDepth);
+
+            // The actions with no fluent left to test are stored in this node, the others vote for the next test
+            List<int[]> rest = new ArrayList<>();
+            int best = -1;
+            for (int[] item : items) {
+                if (item.length == 1) {
+                    stored.get(node).add(item[0]);
+                }
+                else {
+                    rest.add(item);
+                    for (int k = 1; k < item.length; k++) {
+                        int p = item[k];
+                        occurrences[p]++;
+                        if (best < 0 || occurrences[p] > occurrences[best] || (occurrences[p] == occurrences[best] && p < best))
+                            best = p;
+                    }
+                }
+            }
+            for (int[] item : rest)
+                for (int k = 1; k < item.length; k++)
+                    occurrences[item[k]] = 0;
+
+            if (rest.isEmpty())
+                continue;
+
+            // Split the remaining actions between the ones requiring the chosen fluent, which don't have to test it
+            // anymore, and the ones that don't care about it
+            List<int[]> withFluent = new ArrayList<>();
+            List<int[]> withoutFluent = new ArrayList<>();
+            for (int[] item : rest) {
+                int pos = -1;
+                for (int k = 1; k < item.length && pos < 0; k++)
+                    if (item[k] == best)
+                        pos = k;
+                if (pos < 0) {
+                    withoutFluent.add(item);
+                }
+                else {
+                    int[] reduced = new int[item.length - 1];
+                    System.arraycopy(item, 0, reduced, 0, pos);
+                    System.arraycopy(item, pos + 1, reduced, pos, item.length - pos - 1);
+                    withFluent.add(reduced);
+                }
+            }
+
+            tested.set(node, best);
+            if (!withFluent.isEmpty()) {
+                required.set(node, newNode(tested, required, dontCare, stored));
+                queue.add(new Object[]{required.get(node), withFluent, nodeDepth + 1});
+            }
+            if (!withoutFluent.isEmpty()) {
+                dontCare.set(node, newNode(tested, required, dontCare, stored));
+                queue.add(new Object[]{dontCare.get(node), withoutFluent, nodeDepth + 1});
+            }
+        }
+
+        // Flatten the tree into primitive arrays
+        final int nbNodes = tested.size();
+        this.testedFluent = new int[nbNodes];
+        this.requiredChild = new int[nbNodes];
+        this.dontCareChild = new int[nbNodes];
+        this.firstAction = new int[nbNodes + 1];
+        this.nodeActions = new int[actions.size()];
+        int k = 0;
+        for (int n = 0; n < nbNodes; n++) {
+            this.testedFluent[n] = tested.get(n);
+            this.requiredChild[n] = required.get(n);
+            this.dontCareChild[n] = dontCare.get(n);
+            this.firstAction[n] = k;
+            for (int a : stored.get(n))
+                this.nodeActions[k++] = a;
+        }
+        this.firstAction[nbNodes] = k;
+        this.maxDepth = depth;
+    }
+
+    /**
+     * Adds an empty node to the tree under construction and returns its index
+     * */
+    private static int newNode(List<Integer> tested, List<Integer> required, List<Integer> dontCare,
+                               List<List<Integer>> stored) {
+        tested.add(-1);
+        required.add(-1);
+        dontCare.add(-1);
+        stored.add(new ArrayList<>());
+        return tested.size() - 1;
+    }
+
+    /**
+     * Returns the indexes, in the list <code>problem.getActions()</code>, of the actions applicable to the
+     * <code>state</code>. The indexes are sorted in increasing order, so the successors are generated in the same
+     * order as a scan of all the actions would do.
+     * */
+    public int[] getApplicableActions(State state) {
+        int[] applicable = new int[16];
+        int nbApplicable = 0;
+
+        // Each node is pushed at most once and only its children are pushed after it, so the stack never holds
+        // more than one pending node per level plus the current one
+        int[] stack = new int[this.maxDepth + 1];
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+
+            for (int i = this.firstAction[node]; i < this.firstAction[node + 1]; i++) {
+                int a = this.nodeActions[i];
+                BitVector nPre = this.negativePreconditions[a];
+                if (nPre == null || !state.intersects(nPre)) {
+                    if (nbApplicable == applicable.length)
+                        applicable = Arrays.copyOf(applicable, nbApplicable * 2);
+                    applicable[nbApplicable++] = a;
+                }
+            }
+
+            int fluent = this.testedFluent[node];
+            if (fluent >= 0) {
+                if (this.dontCareChild[node] >= 0)
+                    stack[top++] = this.dontCareChild[node];
+                if (this.requiredChild[node] >= 0 && state.get(fluent))
+                    stack[top++] = this.requiredChild[node];
+            }
+        }
+
+        int[] result = Arrays.copyOf(applicable, nbApplicable);
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,390 @@
+import fr.uga.pddl4j.problem.Fluent;
+import fr.uga.pddl4j.problem.Problem;
+import fr.uga.pddl4j.problem.operator.Action;
+import fr.uga.pddl4j.problem.operator.Condition;
+import fr.uga.pddl4j.problem.operator.ConditionalEffect;
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The symmetries of a problem between interchangeable objects, used to explore only once the states that differ just
+ * by the names of those objects. In this domain the boxes are all alike, the box places of a carrier too, and so are
+ * the agents: a plan that loads b1 and then b2 is as good as one that loads b2 and then b1.
+ *
+ * Two objects of the same type are interchangeable if swapping them maps the grounded actions of the problem to
+ * grounded actions of the problem and the goal to itself: then swapping them in a state and in a plan from it gives
+ * a plan from the swapped state, of the same length. Being interchangeable is an equivalence, so the objects of every
+ * type are split into groups of objects all interchangeable with each other. Carriers are never swapped alone, since
+ * their box places would have to be swapped with them.
+ *
+ * The fingerprint of a state is the one of its canonical form: the objects of every group are sorted by a signature
+ * that does not depend on their names (the fluents they're in, with the names of the objects of the groups left
+ * out), the ties by identifier, and renamed in that order. The canonical form is always the image of the state by a
+ * permutation of the groups, so two states with the same fingerprint are symmetric and one of them can be skipped;
+ * two symmetric states may still get different fingerprints when the signatures tie, which only explores more.
+ *
+ * The tables are never modified after the constructor; the scratch arrays belong to the thread, so the same object
+ * can be used by the threads of the parallel searches.
+ * */
+public class Symmetry {
+
+    /**
+     * The predicate and the arguments of every fluent
+     * */
+    private final int[] predicates;
+
+    private final int[][] arguments;
+
+    /**
+     * For every fluent, true if at least an argument belongs to a group
+     * */
+    private final boolean[] symmetric;
+
+    /**
+     * For every fluent and every argument in a group, the contribution of the fluent to the signature of the
+     * argument; the other entries are unused
+     * */
+    private final long[][] signatureKeys;
+
+    /**
+     * The key of every fluent without arguments in a group, which is the same in the canonical form
+     * */
+    private final long[] fixedKeys;
+
+    /**
+     * The group of every object, or -1, and the objects of every group in increasing order of identifier
+     * */
+    private final int[] groupOf;
+
+    private final int[][] groups;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    /**
+     * The arrays used to compute a fingerprint: the signature of every object, its canonical name, and the members of
+     * a group being sorted
+     * */
+    private static final class Scratch {
+        final long[] signatures;
+        final int[] renaming;
+        final int[] order;
+
+        Scratch(int nbObjects, int largestGroup) {
+            this.signatures = new long[nbObjects];
+            this.renaming = new int[nbObjects];
+            this.order = new int[largestGroup];
+            for (int o = 0; o < nbObjects; o++)
+                this.renaming[o] = o;
+        }
+    }
+
+    public Symmetry(Problem problem, DomainModel model) {
+        final int nbObjects = problem.getConstantSymbols().size();
+        final List<Action> actions = problem.getActions();
+
+        // The grounded actions and fluents, to find the image of an action or of a fluent by a swap, and the actions
+        // involving every object, as a parameter or in a fluent of their conditions and effects, like the constants
+        final List<Fluent> fluents = problem.getFluents();
+        Map<List<Integer>, Integer> actionIndexes = new HashMap<>();
+        List<Set<Integer>> actionsOfObject = new ArrayList<>();
+        for (int o = 0; o < nbObjects; o++)
+            actionsOfObject.add(new HashSet<>());
+        for (int i = 0; i < actions.size(); i++) {
+            final Action action = actions.get(i);
+            actionIndexes.put(key(model.getKind(i), action.getInstantiations(), -1, -1), i);
+            for (int object : action.getInstantiations())
+                actionsOfObject.get(object).add(i);
+            List<BitVector> parts = new ArrayList<>();
+            parts.add(action.getPrecondition().getPositiveFluents());
+            parts.add(action.getPrecondition().getNegativeFluents());
+            for (ConditionalEffect effect : action.getConditionalEffects()) {
+                parts.add(effect.getCondition().getPositiveFluents());
+                parts.add(effect.getCondition().getNegativeFluents());
+                parts.add(effect.getEffect().getPositiveFluents());
+                parts.add(effect.getEffect().getNegativeFluents());
+            }
+            for (BitVector part : parts)
+                for (int p = part.nextSetBit(0); p >= 0; p = part.nextSetBit(p + 1))
+                    for (int object : fluents.get(p).getArguments())
+                        actionsOfObject.get(object).add(i);
+        }
+        Map<List<Integer>, Integer> fluentIndexes = new HashMap<>();
+        for (int p = 0; p < fluents.size(); p++)
+            fluentIndexes.put(key(fluents.get(p).getSymbol(), fluents.get(p).getArguments(), -1, -1), p);
+        final Swaps swaps = new Swaps(model, actions, fluents, actionIndexes, actionsOfObject, fluentIndexes,
+                problem.getGoal());
+
+        // Split the objects of every type into groups of interchangeable objects, comparing every object with the
+        // first object of the groups found so far
+        this.groupOf = new int[nbObjects];
+        Arrays.fill(this.groupOf, -1);
+        List<int[]> groups = new ArrayList<>();
+        for (int type : new int[]{DomainModel.AGENT, DomainModel.BOX, DomainModel.BOX_PLACE, DomainModel.LOCATION,
+                DomainModel.CONTENT, DomainModel.PERSON}) {
+            List<List<Integer>> classes = new ArrayList<>();
+            for (int object : model.getObjects(type)) {
+                List<Integer> found = null;
+                for (List<Integer> c : classes) {
+                    if (swaps.swappable(c.get(0), object)) {
+                        found = c;
+                        break;
+                    }
+                }
+                if (found == null) {
+                    found = new ArrayList<>();
+                    classes.add(found);
+                }
+                found.add(object);
+            }
+            for (List<Integer> c : classes) {
+                if (c.size() < 2)
+                    continue;
+                for (int object : c)
+                    this.groupOf[object] = groups.size();
+                groups.add(c.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        this.groups = groups.toArray(new int[0][]);
+
+        // The keys of the fluents: fixed for the fluents that no renaming changes, and a key for every argument in a
+        // group, made of the predicate and of the other arguments, with the ones in a group replaced by their group
+        this.predicates = new int[fluents.size()];
+        this.arguments = new int[fluents.size()][];
+        this.symmetric = new boolean[fluents.size()];
+        this.signatureKeys = new long[fluents.size()][];
+        this.fixedKeys = new long[fluents.size()];
+        for (int p = 0; p < fluents.size(); p++) {
+            this.predicates[p] = fluents.get(p).getSymbol();
+            this.arguments[p] = fluents.get(p).getArguments();
+            final int[] args = this.arguments[p];
+            this.signatureKeys[p] = new long[args.length];
+            for (int i = 0; i < args.length; i++) {
+                if (this.groupOf[args[i]] < 0)
+                    continue;
+                this.symmetric[p] = true;
+                long h = mix(this.predicates[p] + 1);
+                for (int j = 0; j < args.length; j++) {
+                    final long code = j == i ? -1 : this.groupOf[args[j]] >= 0 ? -2 - this.groupOf[args[j]] : args[j];
+                    h = mix(h * 0x9E3779B97F4A7C15L + code);
+                }
+                this.signatureKeys[p][i] = h;
+            }
+            this.fixedKeys[p] = fluentKey(this.predicates[p], args, null);
+        }
+
+        int largestGroup = 0;
+        for (int[] group : this.groups)
+            largestGroup = Integer.max(largestGroup, group.length);
+        final int size = largestGroup;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(nbObjects, size));
+    }
+
+    /**
+     * The check of whether two objects are interchangeable, used only by the constructor
+     * */
+    private static final class Swaps {
+        final DomainModel model;
+        final List<Action> actions;
+        final List<Fluent> fluents;
+        final Map<List<Integer>, Integer> actionIndexes;
+        final List<Set<Integer>> actionsOfObject;
+        final Map<List<Integer>, Integer> fluentIndexes;
+        final Condition goal;
+
+        Swaps(DomainModel model, List<Action> actions, List<Fluent> fluents, Map<List<Integer>, Integer> actionIndexes,
+              List<Set<Integer>> actionsOfObject, Map<List<Integer>, Integer> fluentIndexes, Condition goal) {
+            this.model = model;
+            this.actions = actions;
+            this.fluents = fluents;
+            this.actionIndexes = actionIndexes;
+            this.actionsOfObject = actionsOfObject;
+            this.fluentIndexes = fluentIndexes;
+            this.goal = goal;
+        }
+
+        /**
+         * Returns true if swapping <code>a</code> and <code>b</code> maps every grounded action to a grounded action
+         * with the swapped preconditions and effects, and the goal to itself. Only the actions involving one of the
+         * two, as a parameter or in their fluents, can change.
+         * */
+        boolean swappable(int a, int b) {
+            for (int object : new int[]{a, b}) {
+                for (int i : this.actionsOfObject.get(object)) {
+                    final Action action = this.actions.get(i);
+                    final Integer image = this.actionIndexes.get(key(this.model.getKind(i), action.getInstantiations(),
+                            a, b));
+                    if (image == null)
+                        return false;
+                    final Set<List<Integer>> swapped = describe(action, a, b);
+                    if (swapped == null || !swapped.equals(describe(this.actions.get(image), -1, -1)))
+                        return false;
+                }
+            }
+            final List<Integer> goal = swap(this.goal, a, b);
+            return goal != null && goal.equals(swap(this.goal, -1, -1));
+        }
+
+        /**
+         * Returns the precondition and the conditional effects of <code>action</code> with <code>a</code> and
+         * <code>b</code> swapped, as lists of fluents, or null if a swapped fluent does not exist
+         * */
+        private Set<List<Integer>> describe(Action action, int a, int b) {
+            Set<List<Integer>> description = new HashSet<>();
+            final List<Integer> precondition = swap(action.getPrecondition(), a, b);
+            if (precondition == null)
+                return null;
+            precondition.add(0, -1);
+            description.add(precondition);
+            for (ConditionalEffect effect : action.getConditionalEffects()) {
+                final List<Integer> condition = swap(effect.getCondition(), a, b);
+                final List<Integer> positive = swap(effect.getEffect().getPositiveFluents(), a, b);
+                final List<Integer> negative = swap(effect.getEffect().getNegativeFluents(), a, b);
+                if (condition == null || positive == null || negative == null)
+                    return null;
+                condition.add(-2);
+                condition.addAll(positive);
+                condition.add(-3);
+                condition.addAll(negative);
+                description.add(condition);
+            }
+            return description;
+        }
+
+        /**
+         * Returns the positive and then the negative fluents of <code>condition</code> with <code>a</code> and
+         * <code>b</code> swapped, each part sorted, or null if a swapped fluent does not exist
+         * */
+        private List<Integer> swap(Condition condition, int a, int b) {
+            final List<Integer> positive = swap(condition.getPositiveFluents(), a, b);
+            final List<Integer> negative = swap(condition.getNegativeFluents(), a, b);
+            if (positive == null || negative == null)
+                return null;
+            positive.add(-4);
+            positive.addAll(negative);
+            return positive;
+        }
+
+        /**
+         * Returns the sorted indexes of the fluents of <code>bits</code> with <code>a</code> and <code>b</code>
+         * swapped, or null if a swapped fluent does not exist
+         * */
+        private List<Integer> swap(BitVector bits, int a, int b) {
+            List<Integer> swapped = new ArrayList<>();
+            for (int p = bits.nextSetBit(0); p >= 0; p = bits.nextSetBit(p + 1)) {
+                final Fluent fluent = this.fluents.get(p);
+                final Integer image = this.fluentIndexes.get(key(fluent.getSymbol(), fluent.getArguments(), a, b));
+                if (image == null)
+                    return null;
+                swapped.add(image);
+            }
+            Collections.sort(swapped);
+            return swapped;
+        }
+    }
+
+    /**
+     * Returns the key of a grounded action or fluent, with <code>a</code> and <code>b</code> swapped
+     * */
+    private static List<Integer> key(int head, int[] arguments, int a, int b) {
+        List<Integer> key = new ArrayList<>(arguments.length + 1);
+        key.add(head);
+        for (int x : arguments)
+            key.add(x == a ? b : x == b ? a : x);
+        return key;
+    }
+
+    /**
+     * Returns the number of groups of interchangeable objects
+     * */
+    public int getNumberOfGroups() {
+        return this.groups.length;
+    }
+
+    /**
+     * Returns a description of the groups, with the names of their objects
+     * */
+    public String describe(Problem problem) {
+        StringBuilder description = new StringBuilder();
+        for (int[] group : this.groups) {
+            description.append(description.length() > 0 ? " " : "").append("{");
+            for (int i = 0; i < group.length; i++)
+                description.append(i > 0 ? " " : "").append(problem.getConstantSymbols().get(group[i]));
+            description.append("}");
+        }
+        return description.toString();
+    }
+
+    /**
+     * Returns the fingerprint of the canonical form of <code>state</code>
+     * */
+    public long fingerprint(BitVector state) {
+        final Scratch scratch = this.scratch.get();
+        final long[] signatures = scratch.signatures;
+        final int[] renaming = scratch.renaming;
+
+        // The signature of every object of the groups
+        for (int[] group : this.groups)
+            for (int object : group)
+                signatures[object] = 0;
+        for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1)) {
+            if (!this.symmetric[p])
+                continue;
+            final int[] args = this.arguments[p];
+            for (int i = 0; i < args.length; i++)
+                if (this.groupOf[args[i]] >= 0)
+                    signatures[args[i]] += this.signatureKeys[p][i];
+        }
+
+        // Sort the objects of every group by signature, the ties by identifier, and give them the names of the group
+        // in that order
+        final int[] order = scratch.order;
+        for (int[] group : this.groups) {
+            for (int i = 0; i < group.length; i++) {
+                final int object = group[i];
+                int j = i;
+                while (j > 0 && signatures[order[j - 1]] > signatures[object]) {
+                    order[j] = order[j - 1];
+                    j--;
+                }
+                order[j] = object;
+            }
+            for (int i = 0; i < group.length; i++)
+                renaming[order[i]] = group[i];
+        }
+
+        // The fingerprint of the renamed state
+        long fingerprint = 0;
+        for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1))
+            fingerprint ^= this.symmetric[p] ? fluentKey(this.predicates[p], this.arguments[p], renaming)
+                    : this.fixedKeys[p];
+        return fingerprint;
+    }
+
+    /**
+     * Returns the key of the fluent made of <code>predicate</code> and of <code>arguments</code> renamed by
+     * <code>renaming</code>, if it's not null
+     * */
+    private static long fluentKey(int predicate, int[] arguments, int[] renaming) {
+        long h = mix(predicate + 1);
+        for (int x : arguments)
+            h = mix(h * 0x9E3779B97F4A7C15L + (renaming != null ? renaming[x] : x));
+        return h;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads the bits of <code>z</code> over the whole word
+     * */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
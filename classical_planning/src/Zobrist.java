@@ -0,0 +1,44 @@
+import fr.uga.pddl4j.util.BitVector;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of the states of a problem: every fluent has a random 64-bit key, and the fingerprint of a state is
+ * the xor of the keys of the fluents true in it. Since xor is its own inverse, the fingerprint of a successor is the
+ * one of its parent with the keys of the fluents changed by the action flipped, so it's computed without visiting the
+ * whole state (see <code>Node.computeFingerprint</code>).
+ *
+ * Two different states have the same fingerprint with probability 2^-64, so the fingerprint can stand for the state in
+ * the set of the explored nodes (see <code>ClosedSet</code>). The keys are drawn from a fixed seed, so the
+ * fingerprints, and the searches using them, are the same in every run.
+ * */
+public class Zobrist {
+
+    private static final long SEED = 0x5DEECE66DL;
+
+    private final long[] keys;
+
+    public Zobrist(int nbFluents) {
+        this.keys = new long[nbFluents];
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int p = 0; p < nbFluents; p++)
+            this.keys[p] = random.nextLong();
+    }
+
+    /**
+     * Returns the key of the fluent <code>p</code>
+     * */
+    public long key(int p) {
+        return this.keys[p];
+    }
+
+    /**
+     * Returns the fingerprint of <code>state</code>, computed from all its fluents
+     * */
+    public long hash(BitVector state) {
+        long fingerprint = 0;
+        for (int p = state.nextSetBit(0); p >= 0; p = state.nextSetBit(p + 1))
+            fingerprint ^= this.keys[p];
+        return fingerprint;
+    }
+}